@@ -0,0 +1,34 @@
+package com.sun.transfer_service.config;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/** Cost the correlation-id filter adds to every request, with and without a client-supplied id */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CorrelationIdFilterBenchmark {
+
+    private final CorrelationIdFilter filter = new CorrelationIdFilter();
+
+    @Benchmark
+    public MockHttpServletResponse generatedId() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse propagatedId() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        request.addHeader(CorrelationIdFilter.HEADER, "3f2a9c1e-client-supplied");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,54 @@
+package com.sun.transfer_service.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/** Jackson (de)serialization of the request/response bodies, using Spring's default mapper setup */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransferJsonBenchmark {
+
+    private ObjectMapper mapper;
+    private TransferRequest request;
+    private TransferResponse response;
+    private byte[] requestJson;
+    private byte[] responseJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        request = new TransferRequest(1L, 2L, new BigDecimal("100.00"));
+        response = TransferResponse.builder()
+                .transferId("0190f5d2-7c1e-7a3b-9e4f-2b6c8d0a1e3f")
+                .status("SUCCESS")
+                .message("Transfer completed")
+                .build();
+        requestJson = mapper.writeValueAsBytes(request);
+        responseJson = mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public TransferRequest readRequest() throws Exception {
+        return mapper.readValue(requestJson, TransferRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeRequest() throws Exception {
+        return mapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public TransferResponse readResponse() throws Exception {
+        return mapper.readValue(responseJson, TransferResponse.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+}
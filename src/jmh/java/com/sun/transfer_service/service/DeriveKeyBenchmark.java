@@ -0,0 +1,47 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.dto.TransferRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item batch key derivation; run with -prof gc to see bytes allocated per key.
+ * {@code stringPayload} is the previous String-concatenation approach, kept as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeriveKeyBenchmark {
+
+    private static final String BATCH_KEY = "payroll-2024-06";
+
+    private final IdempotencyKeys.ItemKeys itemKeys = IdempotencyKeys.forBatch(BATCH_KEY);
+    private final TransferRequest item = new TransferRequest(123456789L, 987654321L, new BigDecimal("2500.75"));
+    private MessageDigest sha256;
+
+    @Setup
+    public void setUp() throws Exception {
+        sha256 = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public String deriveKey() {
+        return itemKeys.of(item);
+    }
+
+    @Benchmark
+    public String stringPayload() {
+        String payload = BATCH_KEY + ":" + item.getFromAccountId() + "|" + item.getToAccountId() + "|" + item.getAmount();
+        return HexFormat.of().formatHex(sha256.digest(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String clientKey() {
+        return IdempotencyKeys.ofClientKey("c0ffee00-1234-4abc-9def-0123456789ab");
+    }
+}
@@ -0,0 +1,31 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.dto.TransferResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/** In-process ledger that approves every transfer immediately, so benchmarks measure only our side */
+class StubLedgerClient extends LedgerClient {
+
+    StubLedgerClient() {
+        super(WebClient.create(), Optional.empty());
+    }
+
+    @Override
+    public Mono<TransferResponse> transferToLedgerAsync(String transferId, Long fromAccountId,
+                                                        Long toAccountId, BigDecimal amount) {
+        return Mono.just(success(transferId));
+    }
+
+    private static TransferResponse success(String transferId) {
+        return TransferResponse.builder()
+                .transferId(transferId)
+                .status("SUCCESS")
+                .message("Transfer completed")
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.TransferServiceApplication;
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Transfer hot path against the real Spring context and H2, with the ledger
+ * replaced by {@link StubLedgerClient}. Single transfers go through
+ * {@link TransferService#createTransferAsync}, as POST /transfer does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransferServiceBenchmark {
+
+    @Configuration
+    static class StubLedgerConfig {
+        @Bean
+        @Primary
+        LedgerClient stubLedgerClient() {
+            return new StubLedgerClient();
+        }
+    }
+
+    private final AtomicLong keys = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private TransferService service;
+    private TransferRequest request;
+    private List<TransferRequest> batch;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(TransferServiceApplication.class, StubLedgerConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:benchdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "transfer.idempotency.cleanup.interval=PT24H")
+                .run();
+        service = context.getBean(TransferService.class);
+        request = new TransferRequest(1L, 2L, new BigDecimal("100.00"));
+        batch = IntStream.range(0, 20)
+                .mapToObj(i -> new TransferRequest((long) i, (long) i + 1000, new BigDecimal("10.00")))
+                .toList();
+        service.createTransferAsync(request, "replay-key").block();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransferResponse createTransferFresh() {
+        return service.createTransferAsync(request, "fresh-" + keys.incrementAndGet()).block();
+    }
+
+    @Benchmark
+    public TransferResponse createTransferReplay() {
+        return service.createTransferAsync(request, "replay-key").block();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public List<TransferResponse> processBatch20() {
+        return service.processBatch(batch, "batch-" + keys.incrementAndGet());
+    }
+}
@@ -0,0 +1,147 @@
+package com.sun.transfer_service.client;
+
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Micro-batches ledger transfers: calls arriving within {@code ledger.batching.window}
+ * (or until {@code ledger.batching.max-items} are queued) go out as one POST to
+ * {@code ledger.batching.bulk-path}, and each caller gets its own result back,
+ * matched by transferId.
+ * <p>
+ * The window uses fair backpressure: while {@code max-concurrent-bulks} bulks are out, closed
+ * windows wait for a free slot instead of failing the pipeline. Calls queue up to
+ * {@code max-queued}; beyond that they fail straight away. Should the pipeline fail anyway,
+ * every call waiting on it gets the error and a new pipeline takes over.
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.batching.enabled", havingValue = "true")
+public class LedgerBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerBatcher.class);
+    private static final ParameterizedTypeReference<List<TransferResponse>> RESULTS =
+            new ParameterizedTypeReference<>() {};
+
+    private record Pending(LedgerTransfer transfer, Sinks.One<TransferResponse> reply) {
+    }
+
+    private final WebClient ledgerWebClient;
+    private final LedgerProperties.Batching cfg;
+    /** Calls submitted and not yet answered, so a failed pipeline can answer them */
+    private final Set<Pending> outstanding = ConcurrentHashMap.newKeySet();
+    /** The unicast sink takes one emitter at a time; callers wait here instead of spinning on it */
+    private final Object emitLock = new Object();
+    private volatile Sinks.Many<Pending> queue;
+    private volatile Disposable pump;
+    private volatile boolean stopped;
+
+    public LedgerBatcher(WebClient ledgerWebClient, LedgerProperties properties) {
+        this.ledgerWebClient = ledgerWebClient;
+        this.cfg = properties.getBatching();
+        start();
+    }
+
+    private void start() {
+        Sinks.Many<Pending> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<Pending>get(cfg.getMaxQueued()).get());
+        queue = sink;
+        pump = sink.asFlux()
+                .bufferTimeout(cfg.getMaxItems(), cfg.getWindow(), true)
+                .flatMap(this::send, cfg.getMaxConcurrentBulks())
+                .subscribe(null, this::restart);
+    }
+
+    private void restart(Throwable error) {
+        log.error("Ledger batching pipeline failed; failing waiting calls and restarting", error);
+        for (Pending pending : List.copyOf(outstanding)) {
+            pending.reply().tryEmitError(error);
+        }
+        if (!stopped) {
+            start();
+        }
+    }
+
+    /** Queues one transfer; the Mono completes when its bulk comes back */
+    public Mono<TransferResponse> submit(LedgerTransfer transfer) {
+        return Mono.defer(() -> {
+            Pending pending = new Pending(transfer, Sinks.one());
+            outstanding.add(pending);
+            Sinks.EmitResult result = emit(pending);
+            if (result.isFailure()) {
+                outstanding.remove(pending);
+                return Mono.error(new IllegalStateException(result == Sinks.EmitResult.FAIL_OVERFLOW
+                        ? "Ledger batch queue is full" : "Ledger batching is not running: " + result));
+            }
+            return pending.reply().asMono().doFinally(signal -> outstanding.remove(pending));
+        });
+    }
+
+    /**
+     * tryEmitNext rather than emitNext: emitNext answers a full queue by erroring the sink,
+     * which would take the whole pipeline down for one call too many. Under the lock it never
+     * sees another emitter, so FAIL_NON_SERIALIZED cannot come back.
+     */
+    private Sinks.EmitResult emit(Pending pending) {
+        synchronized (emitLock) {
+            return queue.tryEmitNext(pending);
+        }
+    }
+
+    private Mono<Void> send(List<Pending> bulk) {
+        List<LedgerTransfer> body = bulk.stream().map(Pending::transfer).toList();
+        log.info("Calling Ledger bulk: size={}", body.size());
+
+        return ledgerWebClient.post()
+                .uri(cfg.getBulkPath())
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(RESULTS)
+                .defaultIfEmpty(List.of())
+                .doOnNext(results -> fanOut(bulk, results))
+                .doOnError(ex -> bulk.forEach(p -> p.reply().tryEmitError(ex)))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    private static void fanOut(List<Pending> bulk, List<TransferResponse> results) {
+        Map<String, TransferResponse> byId = results.stream()
+                .filter(r -> r.getTransferId() != null)
+                .collect(Collectors.toMap(TransferResponse::getTransferId, Function.identity(), (a, b) -> a));
+        for (Pending p : bulk) {
+            TransferResponse result = byId.get(p.transfer().transferId());
+            if (result != null) {
+                p.reply().tryEmitValue(result);
+            } else {
+                p.reply().tryEmitError(new IllegalStateException(
+                        "Ledger bulk response has no result for transferId=" + p.transfer().transferId()));
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopped = true;
+        synchronized (emitLock) {
+            queue.tryEmitComplete();
+        }
+        pump.dispose();
+    }
+}
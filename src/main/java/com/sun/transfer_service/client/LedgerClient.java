@@ -1,6 +1,7 @@
 package com.sun.transfer_service.client;
 
 import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.model.Transfer;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -10,38 +11,20 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.util.Map;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
 public class LedgerClient {
 
     private static final Logger log = LoggerFactory.getLogger(LedgerClient.class);
+    /** Message of the FAILURE returned when the circuit breaker falls back */
+    public static final String FALLBACK_MESSAGE = "Ledger service unavailable";
 
     private final WebClient ledgerWebClient;
+    /** Present when ledger.batching.enabled=true */
+    private final Optional<LedgerBatcher> ledgerBatcher;
 
-    @CircuitBreaker(name = "ledger", fallbackMethod = "fallbackTransfer")
-    public TransferResponse transferToLedger(String transferId,
-                                             Long fromAccountId,
-                                             Long toAccountId,
-                                             BigDecimal amount) {
-        log.info("Calling Ledger: transferId={}, from={}, to={}, amount={}",
-                transferId, fromAccountId, toAccountId, amount);
-
-        return ledgerWebClient.post()
-                .uri("/ledger/transfer")
-                .bodyValue(Map.of(
-                        "transferId", transferId,
-                        "fromAccountId", fromAccountId,
-                        "toAccountId", toAccountId,
-                        "amount", amount
-                ))
-                .retrieve()
-                .bodyToMono(TransferResponse.class)
-                .block();
-    }
-
-    /** Non-blocking version for batch transfers */
     @CircuitBreaker(name = "ledger", fallbackMethod = "fallbackTransferAsync")
     public Mono<TransferResponse> transferToLedgerAsync(String transferId,
                                                         Long fromAccountId,
@@ -50,33 +33,21 @@ public class LedgerClient {
         log.info("Calling Ledger async: transferId={}, from={}, to={}, amount={}",
                 transferId, fromAccountId, toAccountId, amount);
 
+        return send(new LedgerTransfer(transferId, fromAccountId, toAccountId, amount));
+    }
+
+    /** One POST per transfer, or a slot in the next bulk request when batching is enabled */
+    private Mono<TransferResponse> send(LedgerTransfer transfer) {
+        if (ledgerBatcher.isPresent()) {
+            return ledgerBatcher.get().submit(transfer);
+        }
         return ledgerWebClient.post()
                 .uri("/ledger/transfer")
-                .bodyValue(Map.of(
-                        "transferId", transferId,
-                        "fromAccountId", fromAccountId,
-                        "toAccountId", toAccountId,
-                        "amount", amount
-                ))
+                .bodyValue(transfer)
                 .retrieve()
                 .bodyToMono(TransferResponse.class);
     }
 
-    @SuppressWarnings("unused")
-    private TransferResponse fallbackTransfer(String transferId,
-                                              Long fromAccountId,
-                                              Long toAccountId,
-                                              BigDecimal amount,
-                                              Throwable ex) {
-        log.error("Ledger call failed (circuit/failure). transferId={}, error={}",
-                transferId, ex.toString());
-        return TransferResponse.builder()
-                .transferId(transferId)
-                .status("FAILURE")
-                .message("Ledger service unavailable")
-                .build();
-    }
-
     @SuppressWarnings("unused")
     private Mono<TransferResponse> fallbackTransferAsync(String transferId,
                                                          Long fromAccountId,
@@ -87,8 +58,8 @@ public class LedgerClient {
                 transferId, ex.toString());
         return Mono.just(TransferResponse.builder()
                 .transferId(transferId)
-                .status("FAILURE")
-                .message("Ledger service unavailable")
+                .status(Transfer.STATUS_FAILURE)
+                .message(FALLBACK_MESSAGE)
                 .build());
     }
 }
@@ -0,0 +1,10 @@
+package com.sun.transfer_service.client;
+
+import java.math.BigDecimal;
+
+/** Body of one ledger transfer, alone or as an element of a bulk request */
+public record LedgerTransfer(String transferId,
+                             Long fromAccountId,
+                             Long toAccountId,
+                             BigDecimal amount) {
+}
@@ -1,24 +1,66 @@
 package com.sun.transfer_service.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import org.slf4j.MDC;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.Map;
+import java.util.function.Function;
 
 @Configuration
 public class AppConfig {
 
+    /** Dedicated, bounded connection pool for the ledger; publishes reactor.netty.connection.provider.* metrics */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider ledgerConnectionProvider(LedgerProperties properties) {
+        LedgerProperties.Http http = properties.getHttp();
+        return ConnectionProvider.builder("ledger")
+                .maxConnections(http.getMaxConnections())
+                .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(http.getPendingAcquireTimeout())
+                .maxIdleTime(http.getMaxIdleTime())
+                .maxLifeTime(http.getMaxLifeTime())
+                .evictInBackground(http.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient ledgerWebClient(@Value("${ledger.base-url}") String baseUrl) {
+    public WebClient ledgerWebClient(LedgerProperties properties, ConnectionProvider ledgerConnectionProvider) {
+        LedgerProperties.Http http = properties.getHttp();
+        HttpClient httpClient = HttpClient.create(ledgerConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(http.getResponseTimeout())
+                .protocol(http.isH2c() ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                // Ledger paths are fixed, so the uri tag stays low-cardinality
+                .metrics(true, Function.identity());
+
         return WebClient.builder()
-                .baseUrl(baseUrl)
-                .filter((request, next) -> {
-                    String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+                .baseUrl(properties.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter((request, next) -> Mono.deferContextual(ctx -> {
+                    // Async callers carry the id in the Reactor context; blocking callers in MDC
+                    String correlationId = ctx.getOrDefault(CorrelationIdFilter.MDC_KEY,
+                            MDC.get(CorrelationIdFilter.MDC_KEY));
                     ClientRequest newRequest = request;
                     if (StringUtils.hasText(correlationId)) {
                         newRequest = ClientRequest.from(request)
@@ -26,18 +68,73 @@ public class AppConfig {
                                 .build();
                     }
                     return next.exchange(newRequest);
-                })
+                }))
                 .build();
     }
 
+    /**
+     * Runs batch items. Under {@code spring.threads.virtual.enabled} (Java 21, "virtual-threads"
+     * profile) every item gets its own virtual thread instead of a slot in a sized pool; the
+     * ledger limiter and bulkhead, not this executor, bound how many reach the ledger.
+     */
     @Bean
-    public TaskExecutor batchExecutor() {
+    public TaskExecutor batchExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("batch-transfer-");
+            virtual.setVirtualThreads(true);
+            virtual.setTaskDecorator(AppConfig::withCallerMdc);
+            return virtual;
+        }
         ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
         ex.setCorePoolSize(20);
         ex.setMaxPoolSize(40);
         ex.setQueueCapacity(200);
         ex.setThreadNamePrefix("batch-transfer-");
+        ex.setTaskDecorator(AppConfig::withCallerMdc);
         ex.initialize();
         return ex;
     }
+
+    /**
+     * Runs the blocking JPA steps of the non-blocking transfer path. Timed, so
+     * transfer.persistence.scheduler.tasks.pending shows time spent queueing for a thread.
+     * With virtual threads each step gets its own thread and waits on the connection pool
+     * instead, so {@code transfer.persistence.*} sizing no longer applies.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler persistenceScheduler(TransferProperties properties, MeterRegistry meterRegistry,
+                                          Environment environment) {
+        TransferProperties.Persistence cfg = properties.getPersistence();
+        Scheduler scheduler;
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("transfer-db-");
+            virtual.setVirtualThreads(true);
+            scheduler = Schedulers.fromExecutor(virtual);
+        } else {
+            scheduler = Schedulers.newBoundedElastic(cfg.getThreads(), cfg.getQueueCapacity(), "transfer-db");
+        }
+        return Micrometer.timedScheduler(scheduler, meterRegistry, "transfer.persistence");
+    }
+
+    /** Carries the submitting thread's MDC (correlation id) onto the worker thread */
+    static Runnable withCallerMdc(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            if (context != null) {
+                MDC.setContextMap(context);
+            } else {
+                MDC.clear();
+            }
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    MDC.setContextMap(previous);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
 }
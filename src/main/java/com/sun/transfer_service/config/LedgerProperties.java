@@ -0,0 +1,76 @@
+package com.sun.transfer_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/** Ledger client tunables, bound from {@code ledger.*}. */
+@Component
+@ConfigurationProperties(prefix = "ledger")
+@Getter
+@Setter
+public class LedgerProperties {
+
+    /** Where to call Ledger Service */
+    private String baseUrl = "http://localhost:8081";
+    private final Http http = new Http();
+    private final Batching batching = new Batching();
+    private final Limiter limiter = new Limiter();
+
+    @Getter
+    @Setter
+    public static class Http {
+        /** Pooled connections to the ledger (streams multiplexed per connection under h2c) */
+        private int maxConnections = 200;
+        /** Requests allowed to wait for a pooled connection; beyond this they fail fast */
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        /** Idle connections are closed after this long */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        /** Connections are recycled after this long, so DNS/LB changes are picked up */
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        /** How often idle/expired connections are evicted in the background */
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        /** Time allowed between sending the request and reading the response */
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        /** Use cleartext HTTP/2 (prior knowledge) instead of HTTP/1.1 */
+        private boolean h2c = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Batching {
+        /** Coalesce concurrent transfer calls into bulk requests */
+        private boolean enabled = false;
+        /** How long the first call of a bulk waits for company */
+        private Duration window = Duration.ofMillis(5);
+        /** A bulk is sent as soon as it holds this many transfers */
+        private int maxItems = 50;
+        /** Bulk requests allowed in flight at once */
+        private int maxConcurrentBulks = 8;
+        /** Calls waiting for a bulk; beyond this, new calls fail straight away instead of queueing */
+        private int maxQueued = 10_000;
+        /** Accepts a JSON array of transfers and answers with an array of results */
+        private String bulkPath = "/ledger/transfer/bulk";
+    }
+
+    @Getter
+    @Setter
+    public static class Limiter {
+        /** Adaptive limit on transfers waiting on the ledger; off leaves the {@code ledger} bulkhead as the only cap */
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 200;
+        /** Ledger round-trips slower than this count as congestion and shrink the limit */
+        private Duration latencyThreshold = Duration.ofMillis(500);
+        /** Multiplier applied to the limit on congestion, failure or fallback */
+        private double backoffRatio = 0.9;
+        /** Part of the limit batches, streams and the queue worker may use; the rest is kept for single transfers */
+        private double bulkShare = 0.8;
+    }
+}
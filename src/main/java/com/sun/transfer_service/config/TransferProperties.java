@@ -0,0 +1,170 @@
+package com.sun.transfer_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/** Tunables for the transfer engine, bound from {@code transfer.*}. */
+@Component
+@ConfigurationProperties(prefix = "transfer")
+@Getter
+@Setter
+public class TransferProperties {
+
+    private final Batch batch = new Batch();
+    private final Stream stream = new Stream();
+    private final Queue queue = new Queue();
+    private final Persistence persistence = new Persistence();
+    private final Idempotency idempotency = new Idempotency();
+    private final StatusCache statusCache = new StatusCache();
+    private final Partitioning partitioning = new Partitioning();
+    private final Lanes lanes = new Lanes();
+    private final Events events = new Events();
+    private final History history = new History();
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /** Largest batch accepted by POST /transfer/batch */
+        private int maxSize = 20;
+        /** Items of one batch allowed in flight at the same time */
+        private int concurrency = 10;
+        /** Per-item budget, ledger call included; an item over it is FAILURE, or PENDING if the ledger already has it */
+        private Duration itemTimeout = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        /** Items of one NDJSON stream in flight at the same time; also bounds buffered results */
+        private int concurrency = 32;
+        /** Per-item budget, ledger call included; an item over it is FAILURE, or PENDING if the ledger already has it */
+        private Duration itemTimeout = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Queue {
+        /** Run the queue worker on this instance; transfers can still be queued when off */
+        private boolean enabled = true;
+        /** Queued transfers this instance sends to the ledger at the same time */
+        private int concurrency = 32;
+        /** How long a claimed transfer is reserved to one worker; must outlast a lane wait plus a ledger call */
+        private Duration lease = Duration.ofSeconds(30);
+        /**
+         * Age at which a transfer sent straight to the ledger but still PENDING is taken as
+         * abandoned by a crashed instance and re-sent by the worker under its transferId; must
+         * outlast any inline ledger call, batch and stream item timeouts included
+         */
+        private Duration staleAfter = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Persistence {
+        /** Threads running the blocking JPA steps of the non-blocking transfer path */
+        private int threads = 20;
+        /** Tasks allowed to wait for a persistence thread before submissions are rejected */
+        private int queueCapacity = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        /** How long a key replays its original outcome */
+        private Duration ttl = Duration.ofHours(24);
+        private final Cache cache = new Cache();
+        private final Cleanup cleanup = new Cleanup();
+        private final Filter filter = new Filter();
+
+        @Getter
+        @Setter
+        public static class Cache {
+            /** Completed keys kept in memory for DB-free replays; 0 disables the cache */
+            private long maxSize = 100_000;
+        }
+
+        @Getter
+        @Setter
+        public static class Cleanup {
+            /** Expired keys deleted per statement/transaction */
+            private int chunkSize = 1000;
+            /** A run stops starting new chunks once this much time has passed */
+            private Duration timeBudget = Duration.ofSeconds(30);
+        }
+
+        @Getter
+        @Setter
+        public static class Filter {
+            /** Skip the key lookup when the in-memory filter says a key was never seen; ignored with partitioning */
+            private boolean enabled = true;
+            /** New keys expected per ttl; the filter is sized for this many */
+            private long expectedKeys = 1_000_000;
+            /** Share of new keys still looked up because the filter wrongly reports them as seen */
+            private double falsePositiveRate = 0.01;
+            /** Rotating windows covering the ttl; one is dropped and replaced every ttl / (generations - 1) */
+            private int generations = 4;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class StatusCache {
+        /** SUCCESS/FAILURE transfers kept in memory for DB-free status polls; 0 disables the cache */
+        private long maxSize = 100_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Partitioning {
+        /** Time-partitioned tables (PostgreSQL only; see the "partitioned" profile) */
+        private boolean enabled = false;
+        /** Daily idempotency-key partitions created ahead of time */
+        private int idempotencyDaysAhead = 3;
+        /** Monthly transfer partitions created ahead of time */
+        private int transferMonthsAhead = 2;
+        /** Months of transfers kept online; older ones go to the TransferArchiver. 0 keeps everything */
+        private int transferRetentionMonths = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Lanes {
+        /** Transfers from the same account reach the ledger in order, not all at once */
+        private boolean enabled = true;
+        /** Account-hashed lanes, rounded up to a power of two */
+        private int stripes = 1024;
+        /**
+         * Transfers of one lane let through together; above 1 they can share a ledger batching
+         * window. Batch and stream items skip the lanes, so this only orders single transfers.
+         */
+        private int maxGroup = 1;
+        /** Transfers waiting per lane before new ones are rejected */
+        private int maxQueued = 64;
+        /** Longest wait for a lane turn before the transfer is rejected */
+        private Duration maxWait = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Events {
+        /** Open SSE streams and long-polls; beyond this, subscribers get 503 and poll instead */
+        private int maxSubscribers = 10_000;
+        /** Transfers one subscription may watch */
+        private int maxTransferIds = 100;
+        /** How long one subscription stays open; below spring.mvc.async.request-timeout */
+        private Duration maxWait = Duration.ofSeconds(25);
+    }
+
+    @Getter
+    @Setter
+    public static class History {
+        /** Page size of GET /transfer?accountId=... when the caller gives none */
+        private int defaultLimit = 50;
+        /** Largest page size a caller may ask for */
+        private int maxLimit = 200;
+    }
+}
@@ -9,8 +9,10 @@ import org.springframework.validation.BindException;
 import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
@@ -22,14 +24,15 @@ public class GlobalExceptionHandler {
 
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
-    @ExceptionHandler({ MethodArgumentNotValidException.class, BindException.class, MissingRequestHeaderException.class })
+    @ExceptionHandler({ MethodArgumentNotValidException.class, BindException.class, MissingRequestHeaderException.class,
+            MissingServletRequestParameterException.class, MethodArgumentTypeMismatchException.class })
     public ResponseEntity<Object> handleValidation(Exception ex) {
         return error(HttpStatus.BAD_REQUEST, "Validation failed: " + ex.getMessage());
     }
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<Object> handleStatus(ResponseStatusException ex) {
-        return error((HttpStatus) ex.getStatusCode(), ex.getReason());
+        return error((HttpStatus) ex.getStatusCode(), ex.getReason(), ex.getHeaders());
     }
 
     @ExceptionHandler(ErrorResponseException.class)
@@ -44,12 +47,16 @@ public class GlobalExceptionHandler {
     }
 
     private ResponseEntity<Object> error(HttpStatus status, String message) {
+        return error(status, message, new HttpHeaders());
+    }
+
+    private ResponseEntity<Object> error(HttpStatus status, String message, HttpHeaders headers) {
         Map<String, Object> body = new HashMap<>();
         body.put("timestamp", Instant.now().toString());
         body.put("status", status.value());
         body.put("error", status.getReasonPhrase());
         body.put("message", message);
-        return new ResponseEntity<>(body, new HttpHeaders(), status);
+        return new ResponseEntity<>(body, headers, status);
     }
 }
 
@@ -1,8 +1,13 @@
 package com.sun.transfer_service.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.transfer_service.dto.TransferHistoryPage;
 import com.sun.transfer_service.dto.TransferRequest;
 import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.dto.TransferView;
 import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.service.TransferHistoryService;
 import com.sun.transfer_service.service.TransferService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,12 +17,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 @RestController
@@ -26,55 +45,177 @@ import java.util.List;
 @Tag(name = "Transfer Service", description = "APIs for creating and querying transfers")
 public class TransferController {
 
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final Duration TERMINAL_MAX_AGE = Duration.ofHours(1);
+
     private final TransferService transferService;
+    private final TransferHistoryService transferHistoryService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
             summary = "Create a single transfer",
-            description = "Creates a single transfer between two accounts with idempotency support",
+            description = "Creates a single transfer between two accounts with idempotency support. "
+                    + "With 'Prefer: respond-async' the transfer is queued and answered with 202 and a "
+                    + "Location to poll instead of waiting for the ledger",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Transfer completed successfully",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferResponse.class))),
+                    @ApiResponse(responseCode = "202", description = "Transfer queued (respond-async); poll the Location",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferResponse.class))),
                     @ApiResponse(responseCode = "400", description = "Validation error or missing Idempotency-Key",
                             content = @Content)
             }
     )
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public TransferResponse createTransfer(
+    public Mono<ResponseEntity<TransferResponse>> createTransfer(
             @Valid @RequestBody TransferRequest request,
             @Parameter(description = "Idempotency key to prevent duplicate transfers", required = true)
-            @RequestHeader(name = "Idempotency-Key", required = true) String idempotencyKey) {
+            @RequestHeader(name = "Idempotency-Key", required = true) String idempotencyKey,
+            @Parameter(description = "'respond-async' to queue the transfer and return 202 straight away")
+            @RequestHeader(name = "Prefer", required = false) String prefer) {
 
         if (!StringUtils.hasText(idempotencyKey)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key header is required");
         }
-        return transferService.createTransfer(request, idempotencyKey);
+        if (prefer == null || !prefer.toLowerCase().contains(RESPOND_ASYNC)) {
+            return transferService.createTransferAsync(request, idempotencyKey).map(ResponseEntity::ok);
+        }
+        return transferService.enqueueTransfer(request, idempotencyKey)
+                .map(response -> Transfer.isTerminal(response.getStatus())
+                        ? ResponseEntity.ok(response)
+                        : ResponseEntity.accepted()
+                                .location(URI.create("/transfer/" + response.getTransferId()))
+                                .header("Preference-Applied", RESPOND_ASYNC)
+                                .body(response));
     }
 
     @Operation(
             summary = "Get transfer status",
-            description = "Retrieves the status of a transfer by its ID",
+            description = "Retrieves the status of a transfer by its ID. Responses carry an ETag; send it back in "
+                    + "If-None-Match to get 304 while nothing has changed. SUCCESS and FAILURE are final and "
+                    + "are served from memory",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Transfer found",
-                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Transfer.class))),
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferView.class))),
+                    @ApiResponse(responseCode = "304", description = "Unchanged since the ETag in If-None-Match",
+                            content = @Content),
                     @ApiResponse(responseCode = "404", description = "Transfer not found",
                             content = @Content)
             }
     )
     @GetMapping("/{id}")
-    public Transfer getStatus(
+    public ResponseEntity<TransferView> getStatus(
             @Parameter(description = "Transfer ID", required = true)
-            @PathVariable("id") String transferId) {
+            @PathVariable("id") String transferId,
+            WebRequest webRequest) {
 
-        return transferService.getByTransferId(transferId);
+        TransferView view = transferService.getTransferView(transferId);
+        if (webRequest.checkNotModified(view.etag())) {
+            // 304 with the ETag already written by checkNotModified
+            return null;
+        }
+        // Final states may be reused by the client; PENDING must be revalidated on every poll
+        CacheControl cacheControl = Transfer.isTerminal(view.getStatus())
+                ? CacheControl.maxAge(TERMINAL_MAX_AGE).cachePrivate()
+                : CacheControl.noCache();
+        return ResponseEntity.ok()
+                .eTag(view.etag())
+                .cacheControl(cacheControl)
+                .body(view);
+    }
+
+    @Operation(
+            summary = "Get account transfer history",
+            description = "Transfers the account sent or received, newest first, optionally within [from, to). "
+                    + "Pages are keyset pages: pass nextCursor back as cursor for the next one, with the same "
+                    + "accountId, from and to. Every page costs the same, however deep",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "One page of history",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferHistoryPage.class))),
+                    @ApiResponse(responseCode = "400", description = "Missing accountId, bad range, limit or cursor",
+                            content = @Content)
+            }
+    )
+    @GetMapping
+    public TransferHistoryPage getHistory(
+            @Parameter(description = "Account whose sent and received transfers to list", required = true)
+            @RequestParam("accountId") Long accountId,
+            @Parameter(description = "Earliest createdAt, inclusive (ISO date-time)")
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Latest createdAt, exclusive (ISO date-time)")
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "nextCursor of the previous page")
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @Parameter(description = "Page size, up to transfer.history.max-limit")
+            @RequestParam(name = "limit", required = false) Integer limit) {
+
+        return transferHistoryService.getHistory(accountId, from, to, cursor, limit);
+    }
+
+    @Operation(
+            summary = "Watch transfer outcomes (Server-Sent Events)",
+            description = "Streams the current status of each transfer, then its SUCCESS or FAILURE as soon as it is "
+                    + "recorded, instead of polling GET /transfer/{id}. The stream ends once every transfer is final "
+                    + "or after transfer.events.max-wait; reconnect with the ids still PENDING",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "One event per status change",
+                            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = TransferResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "No ids, or more than transfer.events.max-transfer-ids",
+                            content = @Content),
+                    @ApiResponse(responseCode = "404", description = "A transfer was not found",
+                            content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Too many open subscriptions; poll instead",
+                            content = @Content)
+            }
+    )
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TransferResponse>> watchStatus(
+            @Parameter(description = "Transfer IDs to watch, comma separated", required = true)
+            @RequestParam("ids") List<String> transferIds) {
+
+        return transferService.watchTransfers(transferIds)
+                .map(update -> ServerSentEvent.builder(update)
+                        .id(update.getTransferId())
+                        .event(update.getStatus())
+                        .build());
+    }
+
+    @Operation(
+            summary = "Wait for transfer outcomes (long-poll)",
+            description = "Fallback for clients that cannot read Server-Sent Events: answers once every transfer is "
+                    + "SUCCESS or FAILURE, or after transfer.events.max-wait with whatever is known by then. Poll "
+                    + "again with the ids still PENDING",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Latest status of each transfer",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "No ids, or more than transfer.events.max-transfer-ids",
+                            content = @Content),
+                    @ApiResponse(responseCode = "404", description = "A transfer was not found",
+                            content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Too many open subscriptions; poll instead",
+                            content = @Content)
+            }
+    )
+    @GetMapping("/outcomes")
+    public Mono<List<TransferResponse>> awaitOutcomes(
+            @Parameter(description = "Transfer IDs to wait for, comma separated", required = true)
+            @RequestParam("ids") List<String> transferIds) {
+
+        // a later update replaces the earlier one for the same transfer
+        return transferService.watchTransfers(transferIds)
+                .collectMap(TransferResponse::getTransferId, update -> update, LinkedHashMap::new)
+                .map(latest -> List.copyOf(latest.values()));
     }
 
     @Operation(
             summary = "Create batch transfers",
-            description = "Creates multiple transfers in a batch with idempotency support. Max batch size is 20",
+            description = "Creates multiple transfers in a batch with idempotency support. At most "
+                    + "transfer.batch.max-size items per batch; use /transfer/stream for more",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Batch processed successfully",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = TransferResponse.class))),
-                    @ApiResponse(responseCode = "400", description = "Validation error, missing Idempotency-Key, or batch size exceeded",
+                    @ApiResponse(responseCode = "400", description = "Validation error, missing Idempotency-Key, or more than transfer.batch.max-size items",
                             content = @Content)
             }
     )
@@ -89,4 +230,45 @@ public class TransferController {
         }
         return transferService.processBatch(requests, idempotencyKey);
     }
+
+    @Operation(
+            summary = "Stream bulk transfers",
+            description = "Accepts any number of transfers as NDJSON (one TransferRequest per line) and streams one "
+                    + "TransferResponse line back per item, in input order, as items complete. Items are keyed like "
+                    + "batch items, so re-sending an interrupted upload with the same Idempotency-Key replays "
+                    + "the items that were already processed",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Results streamed as NDJSON",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = TransferResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Missing Idempotency-Key",
+                            content = @Content)
+            }
+    )
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<TransferResponse> createStream(
+            InputStream body,
+            @Parameter(description = "Idempotency key of the whole upload; reuse it to resume", required = true)
+            @RequestHeader(name = "Idempotency-Key", required = true) String idempotencyKey) {
+
+        if (!StringUtils.hasText(idempotencyKey)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key header is required");
+        }
+        // Lines are parsed on demand, so only what is in flight is ever held in memory
+        Flux<TransferRequest> requests = Flux.using(
+                        () -> objectMapper.readerFor(TransferRequest.class).<TransferRequest>readValues(body),
+                        lines -> Flux.fromIterable(() -> lines),
+                        TransferController::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic());
+        return transferService.processStream(requests, idempotencyKey);
+    }
+
+    private static void closeQuietly(MappingIterator<?> lines) {
+        try {
+            lines.close();
+        } catch (IOException ignored) {
+            // the request is finished either way
+        }
+    }
 }
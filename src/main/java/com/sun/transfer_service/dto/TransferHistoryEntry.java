@@ -0,0 +1,27 @@
+package com.sun.transfer_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of GET /transfer?accountId=...: selected straight into this shape by the
+ * {@code TransferRepository} history queries, so no entity is loaded or tracked. Carries only
+ * the columns held by the account history indexes on PostgreSQL, so a page can be an index-only scan.
+ */
+@Value
+@AllArgsConstructor
+public class TransferHistoryEntry {
+    /** Tie-breaker for rows with the same createdAt; part of the page cursor, not of the API */
+    @JsonIgnore
+    Long id;
+    String transferId;
+    Long fromAccountId;
+    Long toAccountId;
+    BigDecimal amount;
+    String status;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,13 @@
+package com.sun.transfer_service.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/** A page of account history, newest first; pass {@code nextCursor} back to get the next one */
+@Value
+public class TransferHistoryPage {
+    List<TransferHistoryEntry> items;
+    /** Null on the last page */
+    String nextCursor;
+}
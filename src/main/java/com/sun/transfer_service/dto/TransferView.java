@@ -0,0 +1,70 @@
+package com.sun.transfer_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+/**
+ * Read model for GET /transfer/{id}: selected straight into this shape by
+ * {@code TransferRepository.findViewByTransferId}, so no entity is loaded or tracked.
+ * Immutable, so terminal views can be cached and shared between requests.
+ */
+@Value
+public class TransferView {
+    String transferId;
+    Long fromAccountId;
+    Long toAccountId;
+    BigDecimal amount;
+    String status;
+    String message;
+    LocalDateTime createdAt;
+    /** Computed once here: a view never changes, and cached ones answer many polls */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    String etag;
+
+    @Builder
+    public TransferView(String transferId, Long fromAccountId, Long toAccountId, BigDecimal amount,
+                        String status, String message, LocalDateTime createdAt) {
+        this.transferId = transferId;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.status = status;
+        this.message = message;
+        this.createdAt = createdAt;
+        this.etag = etagOf(transferId, fromAccountId, toAccountId, amount, status, message, createdAt);
+    }
+
+    /**
+     * Strong validator: SHA-256 over every field of the representation, so two different
+     * bodies never share one and a 304 is only sent for the same bytes
+     */
+    public String etag() {
+        return etag;
+    }
+
+    private static String etagOf(String transferId, Long fromAccountId, Long toAccountId, BigDecimal amount,
+                                 String status, String message, LocalDateTime createdAt) {
+        // message last: it is the only free text, so no other field can absorb part of it
+        String representation = String.join("\n", transferId, String.valueOf(fromAccountId),
+                String.valueOf(toAccountId), String.valueOf(amount), String.valueOf(createdAt),
+                status, String.valueOf(message));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(representation.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
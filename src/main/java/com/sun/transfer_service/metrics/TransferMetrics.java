@@ -0,0 +1,116 @@
+package com.sun.transfer_service.metrics;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.model.Transfer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the transfer path. Timers publish percentile histograms so Prometheus
+ * can aggregate quantiles across pods.
+ * <ul>
+ *     <li>{@code transfer.duration{path,outcome}} end-to-end, from request to response</li>
+ *     <li>{@code transfer.replays{source}} idempotent replays by where they were answered</li>
+ *     <li>{@code transfer.db{step}} time in the reserve / complete transactions</li>
+ *     <li>{@code ledger.call{outcome}} ledger latency, success / failure / fallback / error</li>
+ *     <li>{@code transfer.batch.size}, {@code transfer.batch.duration}</li>
+ *     <li>{@code transfer.stream.items}, {@code transfer.stream.duration{signal}} for NDJSON uploads</li>
+ * </ul>
+ */
+@Component
+public class TransferMetrics {
+
+    public static final String REPLAY_CACHE = "cache";
+    public static final String REPLAY_DB = "db";
+    public static final String REPLAY_IN_FLIGHT = "in_flight";
+
+    private final MeterRegistry registry;
+    private final DistributionSummary batchSize;
+    private final Timer batchDuration;
+    private final DistributionSummary streamItems;
+
+    public TransferMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.batchSize = DistributionSummary.builder("transfer.batch.size")
+                .description("Items per batch request")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.batchDuration = Timer.builder("transfer.batch.duration")
+                .description("Wall time of a whole batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.streamItems = DistributionSummary.builder("transfer.stream.items")
+                .description("Items per NDJSON stream request")
+                .register(registry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /** outcome is the response status, or "replay" when the response was an idempotent replay */
+    public void transferCompleted(Timer.Sample sample, String path, String outcome) {
+        sample.stop(Timer.builder("transfer.duration")
+                .description("End-to-end transfer latency")
+                .tag("path", path)
+                .tag("outcome", outcome == null ? "unknown" : outcome.toLowerCase())
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void replayed(String source) {
+        Counter.builder("transfer.replays")
+                .description("Idempotent replays by where they were answered")
+                .tag("source", source)
+                .register(registry)
+                .increment();
+    }
+
+    public void dbStep(String step, long nanos) {
+        Timer.builder("transfer.db")
+                .description("Time spent in one transfer's database transaction")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Classifies the ledger result (null = the call threw) and records its latency */
+    public void ledgerCall(Timer.Sample sample, TransferResponse result) {
+        sample.stop(Timer.builder("ledger.call")
+                .description("Ledger round-trip as seen by the service, including circuit breaker fallbacks")
+                .tag("outcome", ledgerOutcome(result))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void batchCompleted(Timer.Sample sample, int size) {
+        batchSize.record(size);
+        sample.stop(batchDuration);
+    }
+
+    /** signal is how the stream ended: on_complete, on_error (malformed input) or cancel (client went away) */
+    public void streamCompleted(Timer.Sample sample, long items, String signal) {
+        streamItems.record(items);
+        sample.stop(Timer.builder("transfer.stream.duration")
+                .description("Wall time of a whole NDJSON stream")
+                .tag("signal", signal.toLowerCase())
+                .register(registry));
+    }
+
+    private static String ledgerOutcome(TransferResponse result) {
+        if (result == null) {
+            return "error";
+        }
+        if (LedgerClient.FALLBACK_MESSAGE.equals(result.getMessage())) {
+            return "fallback";
+        }
+        return Transfer.STATUS_SUCCESS.equals(result.getStatus()) ? "success" : "failure";
+    }
+}
@@ -0,0 +1,32 @@
+package com.sun.transfer_service.model;
+
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.StringJavaType;
+
+import java.util.HexFormat;
+
+/**
+ * Hex string in Java, raw bytes in a binary column: half the width and a cheaper index than
+ * the text form. A Hibernate JavaType rather than an AttributeConverter because it also has to
+ * work on an {@code @Id}, which JPA converters are never applied to.
+ */
+public class HexStringJavaType extends StringJavaType {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Override
+    public <X> X unwrap(String value, Class<X> type, WrapperOptions options) {
+        if (value != null && type == byte[].class) {
+            return type.cast(HEX.parseHex(value));
+        }
+        return super.unwrap(value, type, options);
+    }
+
+    @Override
+    public <X> String wrap(X value, WrapperOptions options) {
+        if (value instanceof byte[] bytes) {
+            return HEX.formatHex(bytes);
+        }
+        return super.wrap(value, options);
+    }
+}
@@ -3,25 +3,48 @@ package com.sun.transfer_service.model;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JavaType;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "idempotency_keys")
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_created_at", columnList = "createdAt")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class IdempotencyKey {
+public class IdempotencyKey implements Persistable<String> {
 
+    /**
+     * SHA-256 of the client's Idempotency-Key (or of the derived per-item batch key) as hex;
+     * stored as a fixed 32-byte binary whatever the length of the original key.
+     */
     @Id
-    @Column(name = "\"key\"", length = 200) // Quoted to avoid reserved word conflict
+    @JavaType(HexStringJavaType.class)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "\"key\"", length = 32) // Quoted to avoid reserved word conflict
     private String key;
 
-    @OneToOne(optional = false)
+    @OneToOne(optional = false, fetch = FetchType.LAZY)
     private Transfer transfer;
 
     @CreationTimestamp
     private LocalDateTime createdAt;
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    /** Keys are assigned, never updated: saving one is always a plain INSERT, so a duplicate hits the primary key */
+    @Override
+    public boolean isNew() {
+        return createdAt == null;
+    }
 }
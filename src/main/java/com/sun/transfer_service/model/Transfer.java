@@ -1,5 +1,6 @@
 package com.sun.transfer_service.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -9,7 +10,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "transfers", indexes = {
-        @Index(name = "idx_transfer_transferId", columnList = "transferId", unique = true)
+        @Index(name = "idx_transfer_transferId", columnList = "transferId", unique = true),
+        @Index(name = "idx_transfers_status_lease", columnList = "status, leaseExpiresAt"),
+        // account history (GET /transfer?accountId=...): seek by (createdAt, id) per account and side
+        @Index(name = "idx_transfers_from_created", columnList = "fromAccountId, createdAt, id"),
+        @Index(name = "idx_transfers_to_created", columnList = "toAccountId, createdAt, id")
 })
 @Getter
 @Setter
@@ -18,8 +23,22 @@ import java.time.LocalDateTime;
 @Builder
 public class Transfer {
 
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILURE = "FAILURE";
+
+    /** SUCCESS and FAILURE never change once recorded */
+    public static boolean isTerminal(String status) {
+        return STATUS_SUCCESS.equals(status) || STATUS_FAILURE.equals(status);
+    }
+
+    /**
+     * Pooled sequence rather than IDENTITY: ids are known before the INSERT, so Hibernate can
+     * batch inserts, and one sequence call covers {@code allocationSize} rows.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_seq")
+    @SequenceGenerator(name = "transfers_seq", sequenceName = "transfers_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -31,11 +50,15 @@ public class Transfer {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal amount;
 
-    /** server-assigned UUID */
+    /**
+     * Server-assigned, time-ordered UUID (v7, see {@link TransferIds}), so new rows land at
+     * the right-hand edge of the unique index; stored as 16 bytes.
+     */
+    @Convert(converter = UuidStringConverter.class)
     @Column(nullable = false, unique = true)
     private String transferId;
 
-    /** SUCCESS | FAILURE */
+    /** PENDING (queued, or ledger call in flight) | SUCCESS | FAILURE */
     @Column(nullable = false)
     private String status;
 
@@ -44,6 +67,16 @@ public class Transfer {
 
     @Column(length = 255)
     private String message;
+
+    /**
+     * The time after which a queue worker may claim the PENDING row. Set for transfers submitted
+     * with {@code Prefer: respond-async}, and for inline ones only once their ledger call is over
+     * and recording the outcome failed, or once they are older than {@code transfer.queue.stale-after}
+     * (the instance sending them died). Claiming pushes it into the future, so a worker that dies
+     * mid-call leaves the row to be picked up again once the lease runs out.
+     */
+    @JsonIgnore
+    private LocalDateTime leaseExpiresAt;
 }
 
 
@@ -0,0 +1,51 @@
+package com.sun.transfer_service.model;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Transfer id generation. Ids are UUID version 7 (RFC 9562): a 48-bit Unix-millisecond
+ * timestamp followed by 74 random bits. Consecutive ids sort by creation time, so inserts go
+ * to the end of the transferId index instead of splitting pages all over it the way random
+ * v4 ids do, while staying as unguessable as {@link UUID#randomUUID()} within a millisecond.
+ */
+public final class TransferIds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private TransferIds() {
+    }
+
+    public static String newId() {
+        return newId(System.currentTimeMillis()).toString();
+    }
+
+    static UUID newId(long epochMillis) {
+        long randA = RANDOM.nextInt() & 0x0FFFL;
+        long randB = RANDOM.nextLong();
+        long msb = (epochMillis << 16) | 0x7000L | randA;
+        long lsb = (randB & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /** True for a canonical 36-char UUID string, i.e. something that could be a transfer id */
+    public static boolean isWellFormed(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        try {
+            UUID.fromString(id);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The lowercase form ids are stored and published under, for a well-formed id in any case;
+     * anything else is returned unchanged
+     */
+    public static String normalize(String id) {
+        return isWellFormed(id) ? UUID.fromString(id).toString() : id;
+    }
+}
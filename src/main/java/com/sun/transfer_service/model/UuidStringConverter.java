@@ -0,0 +1,25 @@
+package com.sun.transfer_service.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.UUID;
+
+/**
+ * Keeps transfer ids as strings in Java and on the API while the column holds a 16-byte
+ * UUID (native {@code uuid} on H2/PostgreSQL, {@code binary(16)} on databases without one)
+ * instead of a 36-char varchar.
+ */
+@Converter
+public class UuidStringConverter implements AttributeConverter<String, UUID> {
+
+    @Override
+    public UUID convertToDatabaseColumn(String attribute) {
+        return attribute == null ? null : UUID.fromString(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(UUID column) {
+        return column == null ? null : column.toString();
+    }
+}
@@ -1,7 +1,47 @@
 package com.sun.transfer_service.repository;
 
 import com.sun.transfer_service.model.IdempotencyKey;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /** Oldest expired keys first; served from the created_at index, no entities loaded */
+    @Query("select k.key from IdempotencyKey k where k.createdAt < :cutoff order by k.createdAt")
+    List<String> findKeysCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Keys created since {@code since}, in (createdAt, key) order after the given position, for
+     * rebuilding {@code IdempotencyKeyFilter} page by page; served from the created_at index
+     */
+    @Query("select k.key as key, k.createdAt as createdAt from IdempotencyKey k " +
+            "where k.createdAt >= :since and (k.createdAt, k.key) > (:afterCreatedAt, :afterKey) " +
+            "order by k.createdAt, k.key")
+    List<KeyCreated> findKeysCreatedSince(@Param("since") LocalDateTime since,
+                                          @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                          @Param("afterKey") String afterKey,
+                                          Limit limit);
+
+    /** Known keys with their transfers in one select, for batch-level reservation */
+    @Query("select k from IdempotencyKey k join fetch k.transfer where k.key in :keys")
+    List<IdempotencyKey> findAllWithTransfer(@Param("keys") Collection<String> keys);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyKey k where k.key in :keys")
+    int deleteByKeyIn(@Param("keys") Collection<String> keys);
+
+    interface KeyCreated {
+        String getKey();
+
+        LocalDateTime getCreatedAt();
+    }
 }
@@ -0,0 +1,27 @@
+package com.sun.transfer_service.repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Time-range partitions of {@code transfers} (monthly) and {@code idempotency_keys} (daily),
+ * so retention is a partition drop instead of millions of row deletes. Only present with
+ * {@code transfer.partitioning.enabled=true}; without it expiry stays row-by-row.
+ */
+public interface PartitionManager {
+
+    /** Creates any missing partitions covering {@code today} and the configured look-ahead */
+    void createUpcoming(LocalDate today);
+
+    /** Drops every idempotency-key partition for a day before {@code day}; returns the dropped tables */
+    List<String> dropIdempotencyPartitionsBefore(LocalDate day);
+
+    /** Transfer partitions for months before {@code month}, oldest first */
+    List<TransferPartition> transferPartitionsBefore(YearMonth month);
+
+    void dropTransferPartition(TransferPartition partition);
+
+    record TransferPartition(String table, YearMonth month) {
+    }
+}
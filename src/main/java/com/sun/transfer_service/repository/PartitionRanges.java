@@ -0,0 +1,79 @@
+package com.sun.transfer_service.repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Partition names and bounds. Idempotency keys are split by {@code created_day}; transfers by
+ * {@code transfer_id} itself: ids are UUID v7, so a month of ids is one contiguous uuid range,
+ * lookups by id prune to a single partition and the unique index on the id stays legal.
+ */
+final class PartitionRanges {
+
+    static final String IDEMPOTENCY_TABLE = "idempotency_keys";
+    static final String TRANSFERS_TABLE = "transfers";
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("uuuuMM");
+    private static final String IDEMPOTENCY_PREFIX = IDEMPOTENCY_TABLE + "_p";
+    private static final String TRANSFERS_PREFIX = TRANSFERS_TABLE + "_p";
+
+    private PartitionRanges() {
+    }
+
+    static String idempotencyPartition(LocalDate day) {
+        return IDEMPOTENCY_PREFIX + DAY.format(day);
+    }
+
+    static String transferPartition(YearMonth month) {
+        return TRANSFERS_PREFIX + MONTH.format(month);
+    }
+
+    /** Day of one of our idempotency-key partitions; empty for any other table name */
+    static Optional<LocalDate> idempotencyDay(String table) {
+        if (table == null || !table.startsWith(IDEMPOTENCY_PREFIX) || table.length() != IDEMPOTENCY_PREFIX.length() + 8) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(LocalDate.parse(table.substring(IDEMPOTENCY_PREFIX.length()), DAY));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Month of one of our transfer partitions; empty for any other table name */
+    static Optional<YearMonth> transferMonth(String table) {
+        if (table == null || !table.startsWith(TRANSFERS_PREFIX) || table.length() != TRANSFERS_PREFIX.length() + 6) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(table.substring(TRANSFERS_PREFIX.length()), MONTH));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Smallest UUID v7 with a timestamp in {@code month} (UTC, like the ids themselves) */
+    static UUID transferIdLowerBound(YearMonth month) {
+        long epochMillis = month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return new UUID(epochMillis << 16, 0L);
+    }
+
+    static String createIdempotencyPartitionSql(LocalDate day) {
+        return "create table if not exists " + idempotencyPartition(day)
+                + " partition of " + IDEMPOTENCY_TABLE
+                + " for values from ('" + day + "') to ('" + day.plusDays(1) + "')";
+    }
+
+    static String createTransferPartitionSql(YearMonth month) {
+        return "create table if not exists " + transferPartition(month)
+                + " partition of " + TRANSFERS_TABLE
+                + " for values from ('" + transferIdLowerBound(month) + "') to ('"
+                + transferIdLowerBound(month.plusMonths(1)) + "')";
+    }
+}
@@ -0,0 +1,97 @@
+package com.sun.transfer_service.repository;
+
+import com.sun.transfer_service.config.TransferProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Declarative range partitions on PostgreSQL 12+. The partitioned parent tables come from
+ * {@code db/partitioned/postgresql-schema.sql}; this class only adds and drops children.
+ * Table names are generated here and checked by {@link PartitionRanges} before any DROP,
+ * so nothing user-supplied ever reaches the DDL.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.partitioning.enabled", havingValue = "true")
+public class PostgresPartitionManager implements PartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresPartitionManager.class);
+
+    private static final String CHILDREN_SQL = "select c.relname from pg_inherits i "
+            + "join pg_class c on c.oid = i.inhrelid "
+            + "join pg_class p on p.oid = i.inhparent "
+            + "where p.relname = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransferProperties.Partitioning cfg;
+
+    public PostgresPartitionManager(JdbcTemplate jdbcTemplate, TransferProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cfg = properties.getPartitioning();
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            throw new IllegalStateException("transfer.partitioning.enabled requires PostgreSQL, not " + product);
+        }
+    }
+
+    @Override
+    public void createUpcoming(LocalDate today) {
+        // One day/month back as well: the database clock and zone may differ from ours
+        for (LocalDate day = today.minusDays(1); !day.isAfter(today.plusDays(cfg.getIdempotencyDaysAhead())); day = day.plusDays(1)) {
+            jdbcTemplate.execute(PartitionRanges.createIdempotencyPartitionSql(day));
+        }
+        YearMonth last = YearMonth.from(today).plusMonths(cfg.getTransferMonthsAhead());
+        for (YearMonth month = YearMonth.from(today.minusDays(1)); !month.isAfter(last); month = month.plusMonths(1)) {
+            jdbcTemplate.execute(PartitionRanges.createTransferPartitionSql(month));
+        }
+    }
+
+    @Override
+    public List<String> dropIdempotencyPartitionsBefore(LocalDate day) {
+        List<String> dropped = new ArrayList<>();
+        for (String table : children(PartitionRanges.IDEMPOTENCY_TABLE)) {
+            if (PartitionRanges.idempotencyDay(table).filter(d -> d.isBefore(day)).isPresent()) {
+                jdbcTemplate.execute("drop table if exists " + table);
+                dropped.add(table);
+            }
+        }
+        if (!dropped.isEmpty()) {
+            log.info("Dropped idempotency key partitions {}", dropped);
+        }
+        return dropped;
+    }
+
+    @Override
+    public List<TransferPartition> transferPartitionsBefore(YearMonth month) {
+        List<TransferPartition> partitions = new ArrayList<>();
+        for (String table : children(PartitionRanges.TRANSFERS_TABLE)) {
+            PartitionRanges.transferMonth(table)
+                    .filter(m -> m.isBefore(month))
+                    .ifPresent(m -> partitions.add(new TransferPartition(table, m)));
+        }
+        partitions.sort(Comparator.comparing(TransferPartition::month));
+        return partitions;
+    }
+
+    @Override
+    public void dropTransferPartition(TransferPartition partition) {
+        if (PartitionRanges.transferMonth(partition.table()).isEmpty()) {
+            throw new IllegalArgumentException("Not a transfer partition: " + partition.table());
+        }
+        jdbcTemplate.execute("drop table if exists " + partition.table());
+        log.info("Dropped transfer partition {}", partition.table());
+    }
+
+    private List<String> children(String parent) {
+        return jdbcTemplate.queryForList(CHILDREN_SQL, String.class, parent);
+    }
+}
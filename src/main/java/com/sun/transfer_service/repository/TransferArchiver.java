@@ -0,0 +1,18 @@
+package com.sun.transfer_service.repository;
+
+import java.time.YearMonth;
+
+/**
+ * Hook for copying a month of transfers somewhere cheaper (object storage, a warehouse)
+ * before its partition is dropped. Without a bean of this type, transfer partitions are
+ * never dropped, whatever {@code transfer.partitioning.transfer-retention-months} says.
+ */
+@FunctionalInterface
+public interface TransferArchiver {
+
+    /**
+     * Called while the partition is still attached and readable. Return normally only once the
+     * rows are stored elsewhere; an exception keeps the partition and it is retried next run.
+     */
+    void archive(String partitionTable, YearMonth month) throws Exception;
+}
@@ -1,10 +1,86 @@
 package com.sun.transfer_service.repository;
 
+import com.sun.transfer_service.dto.TransferHistoryEntry;
+import com.sun.transfer_service.dto.TransferView;
 import com.sun.transfer_service.model.Transfer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
     Optional<Transfer> findByTransferId(String transferId);
+
+    /** Status poll projection: a single-row select of the columns clients see, no managed entity */
+    @Query("select new com.sun.transfer_service.dto.TransferView(t.transferId, t.fromAccountId, t.toAccountId, " +
+            "t.amount, t.status, t.message, t.createdAt) from Transfer t where t.transferId = :transferId")
+    Optional<TransferView> findViewByTransferId(@Param("transferId") String transferId);
+
+    List<Transfer> findAllByTransferIdIn(Collection<String> transferIds);
+
+    /**
+     * Transfers sent by the account, newest first, created at or after {@code from} and strictly
+     * before the (createdAt, id) position of the previous page's last row. A seek on
+     * idx_transfers_from_created, so every page costs the same however deep it is.
+     */
+    @Query("select new com.sun.transfer_service.dto.TransferHistoryEntry(t.id, t.transferId, t.fromAccountId, " +
+            "t.toAccountId, t.amount, t.status, t.createdAt) from Transfer t " +
+            "where t.fromAccountId = :accountId and t.createdAt >= :from " +
+            "and (t.createdAt, t.id) < (:beforeCreatedAt, :beforeId) " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransferHistoryEntry> findSentBefore(@Param("accountId") Long accountId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                              @Param("beforeId") Long beforeId,
+                                              Limit limit);
+
+    /** Received side of {@link #findSentBefore}, on idx_transfers_to_created */
+    @Query("select new com.sun.transfer_service.dto.TransferHistoryEntry(t.id, t.transferId, t.fromAccountId, " +
+            "t.toAccountId, t.amount, t.status, t.createdAt) from Transfer t " +
+            "where t.toAccountId = :accountId and t.createdAt >= :from " +
+            "and (t.createdAt, t.id) < (:beforeCreatedAt, :beforeId) " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransferHistoryEntry> findReceivedBefore(@Param("accountId") Long accountId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                                  @Param("beforeId") Long beforeId,
+                                                  Limit limit);
+
+    /** Single UPDATE for the final ledger outcome; avoids loading the entity */
+    @Modifying
+    @Query("update Transfer t set t.status = :status, t.message = :message where t.transferId = :transferId")
+    int updateOutcome(@Param("transferId") String transferId,
+                      @Param("status") String status,
+                      @Param("message") String message);
+
+    /** Queued transfers whose lease has run out, oldest first */
+    @Query("select t from Transfer t where t.status = 'PENDING' and t.leaseExpiresAt <= :now order by t.leaseExpiresAt")
+    List<Transfer> findClaimable(@Param("now") LocalDateTime now, Limit limit);
+
+    /**
+     * Takes the lease on a queued transfer; returns 0 when another worker claimed it
+     * first or it has already completed.
+     */
+    @Modifying
+    @Query("update Transfer t set t.leaseExpiresAt = :until " +
+            "where t.id = :id and t.status = 'PENDING' and t.leaseExpiresAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /** Makes inline transfers that are still PENDING claimable from {@code now} */
+    @Modifying
+    @Query("update Transfer t set t.leaseExpiresAt = :now " +
+            "where t.transferId in :transferIds and t.status = 'PENDING' and t.leaseExpiresAt is null")
+    int leaseForRecovery(@Param("transferIds") Collection<String> transferIds, @Param("now") LocalDateTime now);
+
+    /** Makes inline transfers still PENDING since before {@code createdBefore} claimable from {@code now} */
+    @Modifying
+    @Query("update Transfer t set t.leaseExpiresAt = :now " +
+            "where t.status = 'PENDING' and t.leaseExpiresAt is null and t.createdAt < :createdBefore")
+    int leaseStale(@Param("createdBefore") LocalDateTime createdBefore, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,191 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orders transfers per source account. Each {@code fromAccountId} hashes to one of
+ * {@code transfer.lanes.stripes} lanes; a lane lets {@code max-group} transfers through at a
+ * time and queues the rest in arrival order, so a hot account (settlement, treasury) sends its
+ * debits to the ledger one after another instead of all at once, where they would conflict and
+ * be retried. Accounts that hash to different lanes never wait on each other; unrelated
+ * accounts sharing a lane do, so {@code stripes} should comfortably exceed the number of accounts
+ * sending at the same time.
+ * <p>
+ * With {@code max-group} above 1 and {@code ledger.batching.enabled}, the transfers a lane lets
+ * through together land in the same batching window and reach the ledger as one bulk call.
+ * <p>
+ * Take the turn before the ledger permit, so transfers queued behind a hot account do not hold
+ * ledger capacity other accounts could use. A lane holding {@code max-queued} waiters, or a
+ * wait longer than {@code max-wait}, fails with {@link LedgerOverloadedException}. Batch and
+ * stream items do not take turns: a payroll run often debits one account throughout, and in a
+ * lane its items would reach the ledger one by one. Their own concurrency limits bound them.
+ * <p>
+ * Meters: {@code transfer.lanes.waiting}, {@code transfer.lanes.rejected}.
+ */
+@Component
+public class AccountLanes {
+
+    private final TransferProperties.Lanes cfg;
+    private final Lane[] lanes;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter rejected;
+
+    public AccountLanes(TransferProperties properties, MeterRegistry registry) {
+        this.cfg = properties.getLanes();
+        int stripes = cfg.getStripes() <= 1 ? 1 : Integer.highestOneBit(cfg.getStripes() - 1) << 1;
+        this.lanes = new Lane[stripes];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+        Gauge.builder("transfer.lanes.waiting", waiting, AtomicInteger::get)
+                .description("Transfers queued behind an earlier transfer from the same account lane")
+                .register(registry);
+        this.rejected = Counter.builder("transfer.lanes.rejected")
+                .description("Transfers turned away because their account lane was full or too slow")
+                .register(registry);
+    }
+
+    /**
+     * The account's turn as soon as its lane has room; waiters are served in arrival order.
+     * Cancelling the returned Mono gives up the place in line. A null account (invalid request,
+     * rejected later) gets a turn straight away.
+     */
+    public Mono<Turn> acquire(Long accountId) {
+        if (!cfg.isEnabled() || accountId == null) {
+            return Mono.just(Turn.NONE);
+        }
+        return enqueue(accountId)
+                .timeout(cfg.getMaxWait(), Mono.error(() -> {
+                    rejected.increment();
+                    return new LedgerOverloadedException();
+                }));
+    }
+
+    private Mono<Turn> enqueue(long accountId) {
+        Lane lane = lanes[index(accountId)];
+        return Mono.<Turn>create(lane::enqueue)
+                // a turn handed over just as the waiter gave up must not leak
+                .doOnDiscard(Turn.class, Turn::release);
+    }
+
+    private int index(long accountId) {
+        // spread sequential account ids over the stripes
+        long h = accountId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (lanes.length - 1);
+    }
+
+    int stripes() {
+        return lanes.length;
+    }
+
+    private final class Lane {
+
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private int running;
+
+        void enqueue(MonoSink<Turn> sink) {
+            Waiter waiter = new Waiter(sink);
+            boolean granted = false;
+            boolean full = false;
+            synchronized (this) {
+                if (running < cfg.getMaxGroup() && queue.isEmpty()) {
+                    running++;
+                    granted = true;
+                } else if (queue.size() >= cfg.getMaxQueued()) {
+                    full = true;
+                } else {
+                    queue.add(waiter);
+                    waiting.incrementAndGet();
+                }
+            }
+            if (granted) {
+                sink.success(new Turn(this));
+            } else if (full) {
+                rejected.increment();
+                sink.error(new LedgerOverloadedException());
+            } else {
+                sink.onCancel(() -> cancel(waiter));
+            }
+        }
+
+        private void cancel(Waiter waiter) {
+            waiter.cancel();
+            boolean removed;
+            synchronized (this) {
+                removed = queue.remove(waiter);
+            }
+            if (removed) {
+                waiting.decrementAndGet();
+            }
+        }
+
+        /** Hands the slot straight to the next live waiter, or frees it */
+        void released() {
+            while (true) {
+                Waiter next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        running--;
+                        return;
+                    }
+                }
+                waiting.decrementAndGet();
+                if (next.offer(new Turn(this))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Held until the transfer no longer waits on the ledger; {@link #release()} is safe to call more than once */
+    public static final class Turn {
+
+        static final Turn NONE = new Turn(null);
+
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Turn(Lane lane) {
+            this.lane = lane;
+        }
+
+        public void release() {
+            if (lane != null && released.compareAndSet(false, true)) {
+                lane.released();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Turn> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Turn> sink) {
+            this.sink = sink;
+        }
+
+        boolean offer(Turn turn) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            sink.success(turn);
+            return true;
+        }
+
+        void cancel() {
+            done.set(true);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many transfers may be waiting on the ledger at once. The limit follows AIMD on
+ * observed ledger round-trips: it grows by one while calls come back under
+ * {@code ledger.limiter.latency-threshold} and the limit is actually being used, and shrinks
+ * by {@code backoff-ratio} when a call is slow, fails or hits the circuit breaker fallback.
+ * So latency stays near the threshold under overload instead of queues growing until
+ * timeouts cascade.
+ * <p>
+ * The resilience4j bulkhead {@code ledger} is a fixed ceiling on top of the adaptive limit.
+ * Interactive callers use {@link #tryAcquire()} and are rejected straight away; bulk callers
+ * use {@link #acquire()} and wait their turn, which slows a batch or stream down instead of
+ * failing its items. Bulk callers only get {@code bulk-share} of the limit, so waiting
+ * batches never leave single transfers with nothing.
+ * <p>
+ * With {@code ledger.limiter.enabled=false} the limit stays out of it and only the bulkhead
+ * caps in-flight calls, for interactive and bulk callers alike.
+ * <p>
+ * Meters: {@code ledger.limiter.limit}, {@code ledger.limiter.in_flight},
+ * {@code ledger.limiter.waiting}, {@code ledger.limiter.rejected{reason}}.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final LedgerProperties.Limiter cfg;
+    private final Bulkhead bulkhead;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter rejectedByLimit;
+    private final Counter rejectedByBulkhead;
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimiter(LedgerProperties properties, BulkheadRegistry bulkheads, MeterRegistry registry) {
+        this.cfg = properties.getLimiter();
+        this.bulkhead = bulkheads.bulkhead("ledger");
+        this.limit = Math.max(cfg.getMinLimit(), Math.min(cfg.getMaxLimit(), cfg.getInitialLimit()));
+
+        Gauge.builder("ledger.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on transfers waiting on the ledger")
+                .register(registry);
+        Gauge.builder("ledger.limiter.in_flight", inFlight, AtomicInteger::get)
+                .description("Transfers holding a ledger permit")
+                .register(registry);
+        Gauge.builder("ledger.limiter.waiting", waiting, AtomicInteger::get)
+                .description("Batch and stream items waiting for a ledger permit")
+                .register(registry);
+        this.rejectedByLimit = rejected(registry, "limit");
+        this.rejectedByBulkhead = rejected(registry, "bulkhead");
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder("ledger.limiter.rejected")
+                .description("Transfers turned away because the ledger was at capacity")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /** A permit now, or empty when the ledger is at capacity */
+    public Optional<Permit> tryAcquire() {
+        return Optional.ofNullable(grant(cfg.isEnabled() ? (int) limit : Integer.MAX_VALUE, true));
+    }
+
+    /**
+     * A permit as soon as one is free; waiters are served in arrival order. Cancelling the
+     * returned Mono (e.g. on timeout) gives up the place in line.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = new Waiter(sink);
+                    sink.onCancel(waiter::cancel);
+                    waiters.add(waiter);
+                    waiting.incrementAndGet();
+                    drainWaiters();
+                })
+                // a permit handed over just as the waiter gave up must not leak
+                .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    /** Permits a bulk caller (batch, stream, queue worker) could get right now */
+    public int availableForBulk() {
+        return Math.max(0, Math.min(bulkLimit() - inFlight.get(),
+                bulkhead.getMetrics().getAvailableConcurrentCalls()));
+    }
+
+    private int bulkLimit() {
+        if (!cfg.isEnabled()) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, (int) (limit * cfg.getBulkShare()));
+    }
+
+    double getLimit() {
+        return limit;
+    }
+
+    /** countRejection is false for waiters, which are not turned away but keep waiting */
+    private Permit grant(int cap, boolean countRejection) {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= cap) {
+                if (countRejection) {
+                    rejectedByLimit.increment();
+                }
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        if (!bulkhead.tryAcquirePermission()) {
+            inFlight.decrementAndGet();
+            if (countRejection) {
+                rejectedByBulkhead.increment();
+            }
+            return null;
+        }
+        return new Permit(this, current + 1);
+    }
+
+    private void drainWaiters() {
+        Waiter next;
+        while ((next = waiters.peek()) != null) {
+            if (next.isCancelled()) {
+                if (waiters.remove(next)) {
+                    waiting.decrementAndGet();
+                }
+                continue;
+            }
+            // only the head may take a permit, so the queue stays fair
+            int cap = bulkLimit();
+            if (cap <= inFlight.get()) {
+                return;
+            }
+            Permit permit = grant(cap, false);
+            if (permit == null) {
+                return;
+            }
+            if (!waiters.remove(next)) {
+                // someone else served it concurrently
+                permit.release();
+                continue;
+            }
+            waiting.decrementAndGet();
+            if (!next.offer(permit)) {
+                permit.release();
+            }
+        }
+    }
+
+    private void released() {
+        inFlight.decrementAndGet();
+        bulkhead.onComplete();
+        drainWaiters();
+    }
+
+    private synchronized void onSample(long rttNanos, boolean dropped, int inFlightAtStart) {
+        if (!cfg.isEnabled()) {
+            return;
+        }
+        double previous = limit;
+        if (dropped || rttNanos > cfg.getLatencyThreshold().toNanos()) {
+            limit = Math.max(cfg.getMinLimit(), limit * cfg.getBackoffRatio());
+        } else if (inFlightAtStart * 2 >= limit) {
+            // only grow when the current limit is actually being used
+            limit = Math.min(cfg.getMaxLimit(), limit + 1);
+        }
+        if (log.isDebugEnabled() && (int) previous != (int) limit) {
+            log.debug("Ledger concurrency limit {} -> {} (rtt={}ms, dropped={})",
+                    (int) previous, (int) limit, TimeUnit.NANOSECONDS.toMillis(rttNanos), dropped);
+        }
+    }
+
+    /**
+     * Held from admission until the transfer no longer waits on the ledger. Report the ledger
+     * round-trip with {@link #onLedgerResult}; {@link #release()} frees it without a sample
+     * (replays, failures before the call). Both are safe to call more than once.
+     */
+    public static final class Permit {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdaptiveConcurrencyLimiter limiter, int inFlightAtStart) {
+            this.limiter = limiter;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void onLedgerResult(long rttNanos, TransferResponse result) {
+            if (released.compareAndSet(false, true)) {
+                boolean dropped = result == null || LedgerClient.FALLBACK_MESSAGE.equals(result.getMessage());
+                limiter.onSample(rttNanos, dropped, inFlightAtStart);
+                limiter.released();
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.released();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Permit> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        boolean offer(Permit permit) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            sink.success(permit);
+            return true;
+        }
+
+        void cancel() {
+            done.set(true);
+        }
+
+        boolean isCancelled() {
+            return done.get();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.sun.transfer_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.model.Transfer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Bounded in-memory map of idempotency key → completed outcome, so retried requests
+ * are answered without a database round-trip. Only terminal outcomes are cached, and
+ * each entry expires when its key would (created at + {@code transfer.idempotency.ttl}).
+ * Publishes {@code cache.*} metrics under {@code cache=idempotency}.
+ */
+@Component
+public class IdempotencyCache {
+
+    record Entry(String transferId, String status, LocalDateTime keyCreatedAt) {
+    }
+
+    private final Cache<String, Entry> cache;
+
+    public IdempotencyCache(TransferProperties properties, MeterRegistry meterRegistry) {
+        Duration ttl = properties.getIdempotency().getTtl();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getIdempotency().getCache().getMaxSize())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        Duration age = Duration.between(entry.keyCreatedAt(), LocalDateTime.now());
+                        return Math.max(0, ttl.minus(age).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency");
+    }
+
+    /** Replay response for a completed key, if cached */
+    public Optional<TransferResponse> replay(String idempotencyKey) {
+        Entry entry = cache.getIfPresent(idempotencyKey);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(TransferResponse.builder()
+                .transferId(entry.transferId())
+                .status(entry.status())
+                .message("Idempotent replay")
+                .build());
+    }
+
+    /** Remembers a terminal outcome; PENDING and other in-flight states are ignored */
+    public void putIfTerminal(String idempotencyKey, String transferId, String status, LocalDateTime keyCreatedAt) {
+        if (transferId == null || keyCreatedAt == null || !Transfer.isTerminal(status)) {
+            return;
+        }
+        cache.put(idempotencyKey, new Entry(transferId, status, keyCreatedAt));
+    }
+}
@@ -1,38 +1,96 @@
 package com.sun.transfer_service.service;
 
-import com.sun.transfer_service.model.IdempotencyKey;
+import com.sun.transfer_service.config.TransferProperties;
 import com.sun.transfer_service.repository.IdempotencyKeyRepository;
-import lombok.RequiredArgsConstructor;
+import com.sun.transfer_service.repository.PartitionManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 @Component
-@RequiredArgsConstructor
 public class IdempotencyCleanupJob {
 
     private static final Logger log = LoggerFactory.getLogger(IdempotencyCleanupJob.class);
-    private static final Duration TTL = Duration.ofHours(24);
 
     private final IdempotencyKeyRepository repo;
+    private final Optional<PartitionManager> partitionManager;
+    private final TransferProperties properties;
+    private final Counter purged;
+    private final Counter partitionsDropped;
+    private final Timer runTimer;
 
-    /** Run hourly to trim old keys */
-    @Scheduled(fixedDelay = 60 * 60 * 1000L)
+    public IdempotencyCleanupJob(IdempotencyKeyRepository repo,
+                                 Optional<PartitionManager> partitionManager,
+                                 TransferProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.partitionManager = partitionManager;
+        this.properties = properties;
+        this.purged = Counter.builder("idempotency.cleanup.purged")
+                .description("Expired idempotency keys deleted")
+                .register(meterRegistry);
+        this.partitionsDropped = Counter.builder("idempotency.cleanup.partitions.dropped")
+                .description("Daily idempotency key partitions dropped whole")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("idempotency.cleanup.duration")
+                .description("Wall time of one cleanup run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run hourly to trim old keys. With partitioning, expiry is dropping whole days of keys
+     * and nothing else: no row is deleted. Keys past the ttl but in a day not yet droppable are
+     * already treated as expired by {@link TransferStore#reserve}. Without partitioning, expired
+     * keys are deleted oldest-first in bounded chunks, each in its own transaction, until the
+     * run's time budget is spent; the remainder is picked up by the next run.
+     */
+    @Scheduled(fixedDelayString = "${transfer.idempotency.cleanup.interval:PT1H}")
     public void cleanup() {
-        var now = LocalDateTime.now().minus(TTL);
-        // Simple scan + delete (ok for demo); in prod, write a custom query.
-        var all = repo.findAll();
-        long removed = all.stream()
-                .filter(k -> k.getCreatedAt() != null && k.getCreatedAt().isBefore(now))
-                .peek(repo::delete)
-                .count();
+        runTimer.record(this::purgeExpired);
+    }
+
+    long purgeExpired() {
+        TransferProperties.Idempotency cfg = properties.getIdempotency();
+        LocalDateTime cutoff = LocalDateTime.now().minus(cfg.getTtl());
+        int chunkSize = cfg.getCleanup().getChunkSize();
+        long deadline = System.nanoTime() + cfg.getCleanup().getTimeBudget().toNanos();
+        if (partitionManager.isPresent()) {
+            // A day's partition is only dropped once all of it is past the cutoff, with a day of
+            // slack because created_day comes from the database clock and zone, not ours
+            partitionsDropped.increment(partitionManager.get()
+                    .dropIdempotencyPartitionsBefore(cutoff.toLocalDate().minusDays(1)).size());
+            return 0;
+        }
+
+        long removed = 0;
+        while (true) {
+            List<String> keys = repo.findKeysCreatedBefore(cutoff, Limit.of(chunkSize));
+            if (keys.isEmpty()) {
+                break;
+            }
+            int deleted = repo.deleteByKeyIn(keys);
+            removed += deleted;
+            purged.increment(deleted);
+            if (keys.size() < chunkSize) {
+                break;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                log.info("Idempotency cleanup hit its time budget; resuming next run");
+                break;
+            }
+        }
         if (removed > 0) {
             log.info("Idempotency cleanup removed {} entries", removed);
         }
+        return removed;
     }
 }
-
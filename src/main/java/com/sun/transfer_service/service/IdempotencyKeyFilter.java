@@ -0,0 +1,273 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository.KeyCreated;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bloom filter over the idempotency keys of the last {@code transfer.idempotency.ttl}, so a key
+ * that was definitely never seen is inserted without first being looked up. Almost every key is
+ * new, which makes that lookup one wasted round-trip per transfer.
+ * <p>
+ * The filter is split into {@code generations} windows of ttl / (generations - 1) each. Keys go
+ * into the current window and are checked against all of them; once a window is older than the
+ * ttl it is replaced by an empty one, so expired keys age out without ever being removed one by
+ * one. Each window is a bit array sized for its share of {@code expected-keys} at
+ * {@code false-positive-rate} / generations, so the rate holds across all of them.
+ * <p>
+ * Keys are already SHA-256 digests: the bit positions come from the first 128 bits of the hex
+ * form (double hashing), with no further hashing.
+ * <p>
+ * Only a "definitely absent" answer is acted on, and only once the filter has been rebuilt from
+ * the table after startup; until then every key is looked up. The filter only knows the keys
+ * this instance reserved or loaded: with N instances, a key reserved on another one is not in
+ * it, so the lookup is skipped and the insert relies on the primary key. It fails there, and
+ * the caller marks the key with {@link #add} and retries with the lookup. The same goes for a
+ * key still in the table after its ttl.
+ * <p>
+ * That fallback needs a primary key on the key alone. With {@code transfer.partitioning.enabled}
+ * it is ({@code key}, {@code created_day}), so a duplicate on another day would be inserted
+ * without complaint; the filter stays off there and every key is looked up.
+ * <p>
+ * Meters: {@code idempotency.filter.skipped}, {@code idempotency.filter.false.positives}.
+ */
+@Component
+public class IdempotencyKeyFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyFilter.class);
+
+    private static final int REBUILD_PAGE_SIZE = 10_000;
+
+    private final IdempotencyKeyRepository keyRepository;
+    private final TransferProperties.Idempotency cfg;
+    /** Enabled, and the primary key catches whatever the filter misses */
+    private final boolean active;
+    private final Clock clock;
+    private final long windowMillis;
+    private final int words;
+    private final int hashes;
+    private final AtomicReferenceArray<Generation> generations;
+    private final Counter skipped;
+    private final Counter falsePositives;
+    private volatile boolean ready;
+
+    @Autowired
+    public IdempotencyKeyFilter(TransferProperties properties, IdempotencyKeyRepository keyRepository,
+                                MeterRegistry registry) {
+        this(properties, keyRepository, registry, Clock.systemDefaultZone());
+    }
+
+    IdempotencyKeyFilter(TransferProperties properties, IdempotencyKeyRepository keyRepository,
+                         MeterRegistry registry, Clock clock) {
+        this.keyRepository = keyRepository;
+        this.cfg = properties.getIdempotency();
+        this.clock = clock;
+        TransferProperties.Idempotency.Filter filter = cfg.getFilter();
+        if (filter.getGenerations() < 2) {
+            throw new IllegalArgumentException("transfer.idempotency.filter.generations must be at least 2");
+        }
+        if (!(filter.getFalsePositiveRate() > 0 && filter.getFalsePositiveRate() < 1)) {
+            throw new IllegalArgumentException("transfer.idempotency.filter.false-positive-rate must be between 0 and 1");
+        }
+        this.active = filter.isEnabled() && !properties.getPartitioning().isEnabled();
+        int count = filter.getGenerations();
+        this.windowMillis = Math.max(1, cfg.getTtl().toMillis() / (count - 1));
+
+        // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 probes per window
+        double perWindow = Math.max(1, Math.ceil((double) filter.getExpectedKeys() / (count - 1)));
+        double rate = filter.getFalsePositiveRate() / count;
+        double bits = Math.ceil(-perWindow * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.words = (int) Math.min(Integer.MAX_VALUE, Math.ceil(bits / Long.SIZE));
+        this.hashes = Math.max(1, (int) Math.round((double) words * Long.SIZE / perWindow * Math.log(2)));
+
+        this.generations = new AtomicReferenceArray<>(count);
+        if (active) {
+            long current = window(clock.millis());
+            for (int i = 0; i < count; i++) {
+                generations.set(slot(current - i), new Generation(current - i, words));
+            }
+        }
+        this.skipped = Counter.builder("idempotency.filter.skipped")
+                .description("Idempotency key lookups skipped because the filter had never seen the key")
+                .register(registry);
+        this.falsePositives = Counter.builder("idempotency.filter.false.positives")
+                .description("Idempotency key lookups the filter asked for that found nothing")
+                .register(registry);
+    }
+
+    /**
+     * False only when the key was definitely not reserved through this instance within the ttl.
+     * Always true while disabled, with partitioning, or before the rebuild has finished.
+     */
+    public boolean mightContain(String key) {
+        if (!ready) {
+            return true;
+        }
+        long h1 = hexLong(key, 0);
+        long h2 = hexLong(key, 16) | 1;
+        long current = window(clock.millis());
+        for (long w = current; w > current - generations.length(); w--) {
+            Generation generation = generations.get(slot(w));
+            if (generation.window == w && generation.contains(h1, h2, hashes)) {
+                return true;
+            }
+        }
+        skipped.increment();
+        return false;
+    }
+
+    /** A lookup the filter asked for found no key */
+    public void falsePositive() {
+        if (ready) {
+            falsePositives.increment();
+        }
+    }
+
+    /** Records a key reserved (or found reserved) now */
+    public void add(String key) {
+        add(key, clock.millis());
+    }
+
+    private void add(String key, long createdAtMillis) {
+        if (!active) {
+            return;
+        }
+        // a database clock ahead of ours must not push a key into a window that does not exist yet
+        Generation generation = generationFor(window(Math.min(createdAtMillis, clock.millis())));
+        if (generation != null) {
+            generation.add(hexLong(key, 0), hexLong(key, 16) | 1, hashes);
+        }
+    }
+
+    /**
+     * Loads the keys of the last ttl from the table, page by page in (createdAt, key) order.
+     * Runs once the application is up, so it does not hold up startup; keys reserved meanwhile
+     * are added as usual, and lookups go on as before until it completes. If it fails, they go
+     * on for good and the service works as it did without the filter.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!active) {
+            if (cfg.getFilter().isEnabled()) {
+                log.info("Idempotency key filter off: partitioned keys are only unique per day, so every key is looked up");
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        long loaded = 0;
+        try {
+            LocalDateTime since = LocalDateTime.now(clock).minus(cfg.getTtl());
+            LocalDateTime afterCreatedAt = since;
+            String afterKey = "";
+            while (true) {
+                List<KeyCreated> page = keyRepository.findKeysCreatedSince(
+                        since, afterCreatedAt, afterKey, Limit.of(REBUILD_PAGE_SIZE));
+                for (KeyCreated key : page) {
+                    add(key.getKey(), key.getCreatedAt().atZone(clock.getZone()).toInstant().toEpochMilli());
+                }
+                loaded += page.size();
+                if (page.size() < REBUILD_PAGE_SIZE) {
+                    break;
+                }
+                KeyCreated last = page.get(page.size() - 1);
+                afterCreatedAt = last.getCreatedAt();
+                afterKey = last.getKey();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key filter rebuild failed; every key will be looked up", e);
+            return;
+        }
+        ready = true;
+        log.info("Idempotency key filter rebuilt. keys={}, bytes={}, hashes={}, tookMs={}",
+                loaded, (long) words * Long.BYTES * generations.length(), hashes,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * The generation for a window, replacing the one in its slot if that has aged out. Null
+     * for a window already past the ttl.
+     */
+    private Generation generationFor(long window) {
+        while (true) {
+            Generation generation = generations.get(slot(window));
+            if (generation.window == window) {
+                return generation;
+            }
+            if (generation.window > window) {
+                return null;
+            }
+            // a racing thread may have replaced it first; either way the slot is current after this
+            generations.compareAndSet(slot(window), generation, new Generation(window, words));
+        }
+    }
+
+    private long window(long millis) {
+        return millis / windowMillis;
+    }
+
+    private int slot(long window) {
+        return (int) Math.floorMod(window, (long) generations.length());
+    }
+
+    /** 64 bits of the digest from 16 hex chars */
+    private static long hexLong(String key, int from) {
+        long value = 0;
+        for (int i = from; i < from + 16; i++) {
+            value = (value << 4) | Character.digit(key.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /** One window's bit array; set bits are never cleared, the whole generation is dropped */
+    private static final class Generation {
+
+        final long window;
+        final AtomicLongArray bits;
+
+        Generation(long window, int words) {
+            this.window = window;
+            this.bits = new AtomicLongArray(words);
+        }
+
+        boolean contains(long h1, long h2, int hashes) {
+            long size = (long) bits.length() * Long.SIZE;
+            long h = h1;
+            for (int i = 0; i < hashes; i++, h += h2) {
+                long bit = Long.remainderUnsigned(h, size);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long h1, long h2, int hashes) {
+            long size = (long) bits.length() * Long.SIZE;
+            long h = h1;
+            for (int i = 0; i < hashes; i++, h += h2) {
+                long bit = Long.remainderUnsigned(h, size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(word);
+                while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    current = bits.get(word);
+                }
+            }
+        }
+    }
+}
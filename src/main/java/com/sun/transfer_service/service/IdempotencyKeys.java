@@ -0,0 +1,152 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.dto.TransferRequest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stored form of idempotency keys: SHA-256 as 64 lowercase hex chars.
+ * <ul>
+ *   <li>A client key is the digest of its UTF-8 bytes.</li>
+ *   <li>A batch or stream item key is the digest of a fixed binary encoding of the batch key and
+ *   the item, so every field is fed to the digest straight from a per-thread buffer instead of
+ *   going through an intermediate String. Amounts are canonicalised (trailing zeros stripped),
+ *   so 100, 100.00 and 1E+2 derive the same key.</li>
+ * </ul>
+ * Safe to use from any thread: each thread keeps its own digest and buffers.
+ * <p>
+ * Item keys are what let a re-sent batch replay its items, so the encoding must never change
+ * silently; {@code IdempotencyKeysTest} pins known outputs.
+ */
+public final class IdempotencyKeys {
+
+    /** First byte of every item encoding; a client header can never start with a control byte */
+    private static final byte ITEM_V1 = 0x01;
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+    private static final byte AMOUNT_LONG = 1;
+    private static final byte AMOUNT_BIG = 2;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private IdempotencyKeys() {
+    }
+
+    /** Stored form of a client Idempotency-Key header */
+    public static String ofClientKey(String clientKey) {
+        State state = STATE.get();
+        state.md.update(clientKey.getBytes(StandardCharsets.UTF_8));
+        return state.finish();
+    }
+
+    /** Item keys for one batch or stream; the batch key is encoded once, not per item */
+    public static ItemKeys forBatch(String batchKey) {
+        byte[] utf8 = batchKey.getBytes(StandardCharsets.UTF_8);
+        byte[] prefix = new byte[5 + utf8.length];
+        prefix[0] = ITEM_V1;
+        putInt(prefix, 1, utf8.length);
+        System.arraycopy(utf8, 0, prefix, 5, utf8.length);
+        return new ItemKeys(prefix);
+    }
+
+    public static final class ItemKeys {
+
+        private final byte[] prefix;
+
+        private ItemKeys(byte[] prefix) {
+            this.prefix = prefix;
+        }
+
+        /** Key of one item; fields may be null, since keys are derived before validation */
+        public String of(TransferRequest item) {
+            State state = STATE.get();
+            byte[] buf = state.buf;
+            int pos = putOptionalLong(buf, 0, item.getFromAccountId());
+            pos = putOptionalLong(buf, pos, item.getToAccountId());
+
+            state.md.update(prefix);
+            BigDecimal amount = item.getAmount();
+            if (amount == null) {
+                buf[pos++] = ABSENT;
+                state.md.update(buf, 0, pos);
+                return state.finish();
+            }
+            BigDecimal canonical = amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros();
+            pos = putInt(buf, pos, canonical.scale());
+            BigInteger unscaled = canonical.unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE) {
+                buf[pos++] = AMOUNT_LONG;
+                pos = putLong(buf, pos, unscaled.longValue());
+                state.md.update(buf, 0, pos);
+            } else {
+                byte[] magnitude = unscaled.toByteArray();
+                buf[pos++] = AMOUNT_BIG;
+                pos = putInt(buf, pos, magnitude.length);
+                state.md.update(buf, 0, pos);
+                state.md.update(magnitude);
+            }
+            return state.finish();
+        }
+    }
+
+    private static int putOptionalLong(byte[] buf, int pos, Long value) {
+        if (value == null) {
+            buf[pos] = ABSENT;
+            return pos + 1;
+        }
+        buf[pos] = PRESENT;
+        return putLong(buf, pos + 1, value);
+    }
+
+    private static int putLong(byte[] buf, int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    private static int putInt(byte[] buf, int pos, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    /** Per-thread digest plus scratch buffers, reused for every key the thread derives */
+    private static final class State {
+        final MessageDigest md;
+        // from/to (2 x 9) + scale (4) + kind (1) + long (8) or length (4)
+        final byte[] buf = new byte[32];
+        final byte[] digest = new byte[32];
+        final byte[] hex = new byte[64];
+
+        State() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 unavailable", e);
+            }
+        }
+
+        String finish() {
+            try {
+                md.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.metrics.TransferMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight map keyed by idempotency key. The first request for a key runs the
+ * transfer; concurrent duplicates on this instance wait for that result instead of
+ * reserving and calling the ledger again. The shared work is detached from any one
+ * subscriber, so a caller that disconnects does not abandon a half-done transfer.
+ */
+@Component
+public class InFlightTransfers {
+
+    private static final Logger log = LoggerFactory.getLogger(InFlightTransfers.class);
+
+    private final ConcurrentMap<String, CompletableFuture<TransferResponse>> inFlight = new ConcurrentHashMap<>();
+    private final TransferMetrics metrics;
+
+    public InFlightTransfers(TransferMetrics metrics, MeterRegistry meterRegistry) {
+        this.metrics = metrics;
+        Gauge.builder("transfer.in_flight", inFlight, Map::size)
+                .description("Distinct idempotency keys currently being processed")
+                .register(meterRegistry);
+    }
+
+    public Mono<TransferResponse> run(String idempotencyKey, Supplier<Mono<TransferResponse>> work) {
+        return Mono.defer(() -> {
+            CompletableFuture<TransferResponse> promise = new CompletableFuture<>();
+            CompletableFuture<TransferResponse> leader = inFlight.putIfAbsent(idempotencyKey, promise);
+            if (leader != null) {
+                log.info("Joining in-flight transfer. key={}", idempotencyKey);
+                metrics.replayed(TransferMetrics.REPLAY_IN_FLIGHT);
+                return Mono.fromFuture(leader, true).map(InFlightTransfers::asReplay);
+            }
+            promise.whenComplete((r, ex) -> inFlight.remove(idempotencyKey, promise));
+            Mono<TransferResponse> started;
+            try {
+                started = work.get();
+            } catch (RuntimeException ex) {
+                started = Mono.error(ex);
+            }
+            started.subscribe(promise::complete, promise::completeExceptionally,
+                    () -> promise.complete(null));
+            return Mono.fromFuture(promise, true);
+        });
+    }
+
+    private static TransferResponse asReplay(TransferResponse original) {
+        return TransferResponse.builder()
+                .transferId(original.getTransferId())
+                .status(original.getStatus())
+                .message("Idempotent replay")
+                .build();
+    }
+}
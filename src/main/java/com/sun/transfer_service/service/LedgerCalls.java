@@ -0,0 +1,60 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.metrics.TransferMetrics;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.service.AdaptiveConcurrencyLimiter.Permit;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * The ledger call shared by inline, batch and queued transfers: records {@code ledger.call},
+ * feeds the round-trip to the {@link AdaptiveConcurrencyLimiter} permit, and turns an error or
+ * empty answer into a FAILURE outcome.
+ */
+@Component
+@RequiredArgsConstructor
+public class LedgerCalls {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerCalls.class);
+
+    private final LedgerClient ledgerClient;
+    private final TransferMetrics metrics;
+
+    /** Never fails: a ledger error comes back as a FAILURE outcome. The caller keeps and releases the permit. */
+    public Mono<TransferResponse> sendToLedger(String transferId, TransferRequest request, Permit permit) {
+        return Mono.defer(() -> {
+                    Timer.Sample ledgerTimer = metrics.start();
+                    long ledgerStart = System.nanoTime();
+                    return ledgerClient.transferToLedgerAsync(transferId,
+                                    request.getFromAccountId(), request.getToAccountId(), request.getAmount())
+                            .doOnSuccess(r -> {
+                                metrics.ledgerCall(ledgerTimer, r);
+                                permit.onLedgerResult(System.nanoTime() - ledgerStart, r);
+                            })
+                            .doOnError(ex -> {
+                                metrics.ledgerCall(ledgerTimer, null);
+                                permit.onLedgerResult(System.nanoTime() - ledgerStart, null);
+                            });
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> ledgerFailure(transferId, null)))
+                .onErrorResume(ex -> Mono.just(ledgerFailure(transferId, ex)));
+    }
+
+    /** Outcome recorded when the ledger call fails outside the circuit breaker fallback */
+    static TransferResponse ledgerFailure(String transferId, Throwable ex) {
+        log.error("Ledger call failed. transferId={}, error={}",
+                transferId, ex != null ? ex.toString() : "empty response");
+        return TransferResponse.builder()
+                .transferId(transferId)
+                .status(Transfer.STATUS_FAILURE)
+                .message("Ledger call failed")
+                .build();
+    }
+}
@@ -0,0 +1,22 @@
+package com.sun.transfer_service.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** 503 with Retry-After, raised when {@link AdaptiveConcurrencyLimiter} has no permit to give */
+public class LedgerOverloadedException extends ResponseStatusException {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    public LedgerOverloadedException() {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Ledger is at capacity; retry shortly with the same Idempotency-Key");
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return headers;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.repository.PartitionManager;
+import com.sun.transfer_service.repository.PartitionManager.TransferPartition;
+import com.sun.transfer_service.repository.TransferArchiver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * Keeps partitions ahead of the clock and retires old transfer months. Runs once during
+ * startup, before the web server takes traffic, so the first insert always has a partition,
+ * then every {@code transfer.partitioning.maintenance-interval}. Idempotency-key partitions
+ * are dropped by {@link IdempotencyCleanupJob}, which owns that TTL.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.partitioning.enabled", havingValue = "true")
+@DependsOnDatabaseInitialization
+public class PartitionMaintenanceJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+
+    private final PartitionManager partitionManager;
+    private final Optional<TransferArchiver> archiver;
+    private final TransferProperties properties;
+    private final Counter archived;
+
+    public PartitionMaintenanceJob(PartitionManager partitionManager,
+                                   Optional<TransferArchiver> archiver,
+                                   TransferProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.partitionManager = partitionManager;
+        this.archiver = archiver;
+        this.properties = properties;
+        this.archived = Counter.builder("transfer.partitions.archived")
+                .description("Monthly transfer partitions archived and dropped")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void createInitialPartitions() {
+        partitionManager.createUpcoming(LocalDate.now());
+    }
+
+    @Scheduled(fixedDelayString = "${transfer.partitioning.maintenance-interval:PT1H}",
+            initialDelayString = "${transfer.partitioning.maintenance-interval:PT1H}")
+    public void maintain() {
+        partitionManager.createUpcoming(LocalDate.now());
+        retireTransferPartitions();
+    }
+
+    /** Archives, then drops, every month older than the retention; stops at the first failure */
+    int retireTransferPartitions() {
+        int retentionMonths = properties.getPartitioning().getTransferRetentionMonths();
+        if (retentionMonths <= 0) {
+            return 0;
+        }
+        if (archiver.isEmpty()) {
+            log.warn("transfer.partitioning.transfer-retention-months is set but there is no TransferArchiver; keeping all transfers");
+            return 0;
+        }
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        int retired = 0;
+        for (TransferPartition partition : partitionManager.transferPartitionsBefore(oldestKept)) {
+            try {
+                archiver.get().archive(partition.table(), partition.month());
+            } catch (Exception e) {
+                log.error("Archiving {} failed; keeping it and retrying next run", partition.table(), e);
+                break;
+            }
+            partitionManager.dropTransferPartition(partition);
+            archived.increment();
+            retired++;
+        }
+        return retired;
+    }
+}
@@ -0,0 +1,168 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.model.Transfer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-process bus for transfer outcomes. Whoever records a SUCCESS or FAILURE publishes it once
+ * the transaction has committed; watchers registered for that transferId get it pushed instead
+ * of polling {@code GET /transfer/{id}}.
+ * <p>
+ * Watchers are indexed by transferId, so publishing only touches the watchers of that one
+ * transfer and never waits on them: each watcher has its own bounded buffer, and an outcome
+ * that does not fit is dropped for that watcher ({@code transfer.events.dropped}) rather than
+ * holding up the publisher. At most {@code transfer.events.max-subscribers} watchers are open at
+ * once; beyond that callers get 503 and fall back to polling.
+ * <p>
+ * Meters: {@code transfer.events.subscribers}, {@code transfer.events.rejected},
+ * {@code transfer.events.dropped}.
+ */
+@Component
+public class TransferEvents {
+
+    private final TransferProperties.Events cfg;
+    private final Map<String, Set<Watcher>> watchersByTransferId = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter rejected;
+    private final Counter dropped;
+
+    public TransferEvents(TransferProperties properties, MeterRegistry registry) {
+        this.cfg = properties.getEvents();
+        Gauge.builder("transfer.events.subscribers", subscribers, AtomicInteger::get)
+                .description("Open status subscriptions (SSE streams and long-polls)")
+                .register(registry);
+        this.rejected = Counter.builder("transfer.events.rejected")
+                .description("Status subscriptions refused because too many were open")
+                .register(registry);
+        this.dropped = Counter.builder("transfer.events.dropped")
+                .description("Outcomes not delivered to a watcher whose buffer was full")
+                .register(registry);
+    }
+
+    /** Pushes a recorded outcome to the transfer's watchers; PENDING outcomes are ignored */
+    public void publish(String transferId, TransferResponse outcome) {
+        if (!Transfer.isTerminal(outcome.getStatus())) {
+            return;
+        }
+        Set<Watcher> watchers = watchersByTransferId.get(transferId);
+        if (watchers == null) {
+            return;
+        }
+        TransferResponse update = TransferResponse.builder()
+                .transferId(transferId)
+                .status(outcome.getStatus())
+                .message(outcome.getMessage())
+                .build();
+        for (Watcher watcher : watchers) {
+            if (watcher.offer(update) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Current state of each transfer followed by every change, until all of them are SUCCESS or
+     * FAILURE or {@code max-wait} has passed. The watcher is registered before
+     * {@code currentState} is asked, so an outcome recorded in between is not missed; each
+     * transfer's final state is emitted once.
+     */
+    public Flux<TransferResponse> watch(Set<String> transferIds, Function<String, Mono<TransferResponse>> currentState) {
+        return Flux.defer(() -> {
+            Watcher watcher = register(transferIds);
+            Flux<TransferResponse> current = Flux.fromIterable(transferIds).flatMap(currentState);
+            return Flux.merge(current, watcher.updates())
+                    .filter(watcher::isNews)
+                    .takeUntil(r -> watcher.allTerminal())
+                    .take(cfg.getMaxWait())
+                    .doFinally(signal -> unregister(watcher));
+        });
+    }
+
+    private Watcher register(Set<String> transferIds) {
+        if (subscribers.incrementAndGet() > cfg.getMaxSubscribers()) {
+            subscribers.decrementAndGet();
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many status subscriptions; poll GET /transfer/{id} instead");
+        }
+        Watcher watcher = new Watcher(transferIds);
+        for (String transferId : transferIds) {
+            watchersByTransferId.computeIfAbsent(transferId, id -> ConcurrentHashMap.newKeySet()).add(watcher);
+        }
+        return watcher;
+    }
+
+    private void unregister(Watcher watcher) {
+        for (String transferId : watcher.transferIds) {
+            watchersByTransferId.computeIfPresent(transferId, (id, watchers) -> {
+                watchers.remove(watcher);
+                return watchers.isEmpty() ? null : watchers;
+            });
+        }
+        subscribers.decrementAndGet();
+    }
+
+    int watchedTransfers() {
+        return watchersByTransferId.size();
+    }
+
+    private static final class Watcher {
+
+        private final Set<String> transferIds;
+        private final Sinks.Many<TransferResponse> sink;
+        // only touched from the merged Flux, whose signals are serialized
+        private final Map<String, String> lastStatus = new HashMap<>();
+        private int terminal;
+
+        Watcher(Set<String> transferIds) {
+            this.transferIds = transferIds;
+            // a transfer normally completes once; the slack covers a lease-expired retry
+            this.sink = Sinks.many().unicast().onBackpressureBuffer(
+                    Queues.<TransferResponse>get(transferIds.size() * 2).get());
+        }
+
+        /** Publishers may race; the sink accepts one emitter at a time */
+        synchronized Sinks.EmitResult offer(TransferResponse outcome) {
+            return sink.tryEmitNext(outcome);
+        }
+
+        Flux<TransferResponse> updates() {
+            return sink.asFlux();
+        }
+
+        boolean isNews(TransferResponse response) {
+            String previous = lastStatus.get(response.getTransferId());
+            if (Transfer.isTerminal(previous) || Objects.equals(previous, response.getStatus())) {
+                return false;
+            }
+            lastStatus.put(response.getTransferId(), response.getStatus());
+            if (Transfer.isTerminal(response.getStatus())) {
+                terminal++;
+            }
+            return true;
+        }
+
+        boolean allTerminal() {
+            return terminal == transferIds.size();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferHistoryEntry;
+import com.sun.transfer_service.dto.TransferHistoryPage;
+import com.sun.transfer_service.repository.TransferRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Transfers an account sent or received, newest first, one page at a time. Pages are keyset
+ * (seek) pages: the cursor is the (createdAt, id) of the last row returned, and the next page
+ * is the rows strictly before it. Each side is one index range scan of {@code limit + 1}
+ * projected rows, and the two are merged here, so page 1000 costs what page 1 does and no
+ * entity is ever loaded.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferHistoryService {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final Comparator<TransferHistoryEntry> NEWEST_FIRST = Comparator
+            .comparing(TransferHistoryEntry::getCreatedAt)
+            .thenComparing(TransferHistoryEntry::getId)
+            .reversed();
+
+    private final TransferRepository transferRepository;
+    private final TransferProperties properties;
+
+    /**
+     * from is inclusive and to exclusive; either may be null for an open range. limit null
+     * means {@code transfer.history.default-limit}.
+     */
+    public TransferHistoryPage getHistory(Long accountId, LocalDateTime from, LocalDateTime to,
+                                          String cursor, Integer limit) {
+        TransferProperties.History cfg = properties.getHistory();
+        int size = limit != null ? limit : cfg.getDefaultLimit();
+        if (size < 1 || size > cfg.getMaxLimit()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + cfg.getMaxLimit());
+        }
+        LocalDateTime lower = from != null ? from : EARLIEST;
+        LocalDateTime upper = to != null ? to : LATEST;
+        if (!lower.isBefore(upper)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        Position before = cursor != null ? Position.decode(cursor) : null;
+        if (before == null || before.createdAt().isAfter(upper)) {
+            // rows at exactly `to` are excluded: nothing sorts before (to, MIN_VALUE) at that instant
+            before = new Position(upper, Long.MIN_VALUE);
+        }
+
+        Limit window = Limit.of(size + 1);
+        List<TransferHistoryEntry> sent = transferRepository.findSentBefore(
+                accountId, lower, before.createdAt(), before.id(), window);
+        List<TransferHistoryEntry> received = transferRepository.findReceivedBefore(
+                accountId, lower, before.createdAt(), before.id(), window);
+        List<TransferHistoryEntry> merged = merge(sent, received, size + 1);
+
+        if (merged.size() <= size) {
+            return new TransferHistoryPage(merged, null);
+        }
+        List<TransferHistoryEntry> page = List.copyOf(merged.subList(0, size));
+        TransferHistoryEntry last = page.get(size - 1);
+        return new TransferHistoryPage(page, new Position(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    /** Both inputs are newest first; a transfer to the account itself is in both and kept once */
+    static List<TransferHistoryEntry> merge(List<TransferHistoryEntry> a, List<TransferHistoryEntry> b, int max) {
+        List<TransferHistoryEntry> merged = new ArrayList<>(Math.min(max, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < max && (i < a.size() || j < b.size())) {
+            if (j == b.size()) {
+                merged.add(a.get(i++));
+            } else if (i == a.size()) {
+                merged.add(b.get(j++));
+            } else {
+                int order = NEWEST_FIRST.compare(a.get(i), b.get(j));
+                if (order == 0) {
+                    merged.add(a.get(i++));
+                    j++;
+                } else {
+                    merged.add(order < 0 ? a.get(i++) : b.get(j++));
+                }
+            }
+        }
+        return merged;
+    }
+
+    /** Opaque page cursor: base64url of "createdAt|id" */
+    record Position(LocalDateTime createdAt, long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new Position(LocalDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+    }
+}
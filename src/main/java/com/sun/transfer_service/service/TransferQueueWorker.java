@@ -0,0 +1,188 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.metrics.TransferMetrics;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.service.AdaptiveConcurrencyLimiter.Permit;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains transfers submitted with {@code Prefer: respond-async}. The transfers table is the
+ * queue: a PENDING row with a lease is waiting, and workers take the lease with a conditional
+ * update before calling the ledger, so any number of instances can share it. Ledger calls go
+ * through {@link LedgerCalls}, like inline ones, so {@code ledger.batching} can group them into
+ * bulk requests.
+ * <p>
+ * Polling stops while the ledger circuit breaker is open, so a burst waits in the table
+ * instead of being failed by the fallback, and only claims as many rows as
+ * {@link AdaptiveConcurrencyLimiter} has permits free, so queued work never crowds out
+ * interactive transfers.
+ * <p>
+ * Each claimed transfer then waits for its {@link AccountLanes} turn, so queued debits from a
+ * hot account reach the ledger in order alongside the inline ones. Unlike inline transfers the
+ * ledger permit is already held while it waits, since rows are only claimed for free permits;
+ * the lease has to cover {@code transfer.lanes.max-wait} as well. A transfer refused a turn
+ * stays PENDING and is retried once its lease expires.
+ * <p>
+ * Transfers sent to the ledger inline are never claimed on a timer, since their call may still
+ * be out. Only when recording an inline outcome failed after the call was over does the caller
+ * lease the row ({@link TransferStore#recoverLater}); it is then claimed here and sent again
+ * under its transfer id. An instance that dies between reserve and complete leaves its rows
+ * without a lease, so {@link #reconcile()} hands over inline rows still PENDING after
+ * {@code transfer.queue.stale-after}, by when no call of theirs can still be out.
+ * <p>
+ * Meters: {@code transfer.queue.in_flight}, {@code transfer.queue.recovered}.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.queue.enabled", havingValue = "true", matchIfMissing = true)
+public class TransferQueueWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferQueueWorker.class);
+
+    private final TransferStore transferStore;
+    private final TransferEvents transferEvents;
+    private final LedgerCalls ledgerCalls;
+    private final AccountLanes accountLanes;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Scheduler persistenceScheduler;
+    private final TransferProperties.Queue cfg;
+    private final TransferMetrics metrics;
+    private final CircuitBreaker ledgerBreaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter recovered;
+
+    public TransferQueueWorker(TransferStore transferStore,
+                               TransferEvents transferEvents,
+                               LedgerCalls ledgerCalls,
+                               AccountLanes accountLanes,
+                               AdaptiveConcurrencyLimiter concurrencyLimiter,
+                               Scheduler persistenceScheduler,
+                               TransferProperties properties,
+                               TransferMetrics metrics,
+                               CircuitBreakerRegistry circuitBreakerRegistry,
+                               MeterRegistry meterRegistry) {
+        this.transferStore = transferStore;
+        this.transferEvents = transferEvents;
+        this.ledgerCalls = ledgerCalls;
+        this.accountLanes = accountLanes;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.persistenceScheduler = persistenceScheduler;
+        this.cfg = properties.getQueue();
+        this.metrics = metrics;
+        this.ledgerBreaker = circuitBreakerRegistry.circuitBreaker("ledger");
+        Gauge.builder("transfer.queue.in_flight", inFlight, AtomicInteger::get)
+                .description("Queued transfers claimed by this instance and not yet completed")
+                .register(meterRegistry);
+        this.recovered = Counter.builder("transfer.queue.recovered")
+                .description("Inline transfers whose outcome was not recorded, re-sent by the queue worker")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${transfer.queue.poll-interval:PT0.1S}")
+    public void poll() {
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("Transfer queue poll failed", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transfer.queue.reconcile-interval:PT1M}")
+    public void reconcile() {
+        try {
+            transferStore.recoverStale(LocalDateTime.now().minus(cfg.getStaleAfter()));
+        } catch (Exception e) {
+            log.error("Stale inline transfer check failed", e);
+        }
+    }
+
+    /** Claims as many queued transfers as there are free slots and starts them; returns how many */
+    int drain() {
+        int free = switch (ledgerBreaker.getState()) {
+            case OPEN, FORCED_OPEN -> 0;
+            // one probe at a time until the breaker decides
+            case HALF_OPEN -> Math.min(1, cfg.getConcurrency() - inFlight.get());
+            default -> cfg.getConcurrency() - inFlight.get();
+        };
+        free = Math.min(free, concurrencyLimiter.availableForBulk());
+        List<Permit> permits = new ArrayList<>();
+        while (permits.size() < free) {
+            Optional<Permit> permit = concurrencyLimiter.tryAcquire();
+            if (permit.isEmpty()) {
+                break;
+            }
+            permits.add(permit.get());
+        }
+        if (permits.isEmpty()) {
+            return 0;
+        }
+
+        List<Transfer> claimed;
+        long start = System.nanoTime();
+        try {
+            claimed = transferStore.claimQueued(permits.size(), cfg.getLease());
+        } catch (RuntimeException e) {
+            permits.forEach(Permit::release);
+            throw e;
+        } finally {
+            metrics.dbStep("claim", System.nanoTime() - start);
+        }
+        // permits beyond what was claimed go straight back
+        permits.subList(claimed.size(), permits.size()).forEach(Permit::release);
+
+        for (int i = 0; i < claimed.size(); i++) {
+            Transfer transfer = claimed.get(i);
+            Permit permit = permits.get(i);
+            if (!TransferStore.QUEUED_MESSAGE.equals(transfer.getMessage())) {
+                recovered.increment();
+                log.warn("Recovering inline transfer whose outcome was not recorded. transferId={}", transfer.getTransferId());
+            }
+            inFlight.incrementAndGet();
+            accountLanes.acquire(transfer.getFromAccountId())
+                    .flatMap(turn -> process(transfer, permit).doFinally(signal -> turn.release()))
+                    .doFinally(signal -> {
+                        permit.release();
+                        inFlight.decrementAndGet();
+                    })
+                    .subscribe(r -> { }, e -> log.error("Queued transfer not completed; it is retried once its lease expires. transferId={}",
+                            transfer.getTransferId(), e));
+        }
+        return claimed.size();
+    }
+
+    private Mono<TransferResponse> process(Transfer transfer, Permit permit) {
+        String transferId = transfer.getTransferId();
+        TransferRequest request = new TransferRequest(
+                transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount());
+        return ledgerCalls.sendToLedger(transferId, request, permit)
+                .flatMap(ledgerResp -> Mono.fromCallable(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        transferStore.complete(transferId, ledgerResp);
+                    } finally {
+                        metrics.dbStep("complete", System.nanoTime() - start);
+                    }
+                    transferEvents.publish(transferId, ledgerResp);
+                    return ledgerResp;
+                }).subscribeOn(persistenceScheduler));
+    }
+}
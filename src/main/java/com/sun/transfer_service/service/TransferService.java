@@ -1,121 +1,604 @@
 package com.sun.transfer_service.service;
 
-import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.config.CorrelationIdFilter;
+import com.sun.transfer_service.config.TransferProperties;
 import com.sun.transfer_service.dto.TransferRequest;
 import com.sun.transfer_service.dto.TransferResponse;
-import com.sun.transfer_service.model.IdempotencyKey;
+import com.sun.transfer_service.dto.TransferView;
+import com.sun.transfer_service.metrics.TransferMetrics;
 import com.sun.transfer_service.model.Transfer;
-import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.model.TransferIds;
 import com.sun.transfer_service.repository.TransferRepository;
-import jakarta.transaction.Transactional;
+import com.sun.transfer_service.service.AccountLanes.Turn;
+import com.sun.transfer_service.service.AdaptiveConcurrencyLimiter.Permit;
+import com.sun.transfer_service.service.TransferStore.Reservation;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
-import java.security.MessageDigest;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.HexFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
 public class TransferService {
 
     private static final Logger log = LoggerFactory.getLogger(TransferService.class);
-    private static final Duration IDEMPOTENCY_TTL = Duration.ofHours(24);
 
     private final TransferRepository transferRepository;
-    private final IdempotencyKeyRepository keyRepository;
-    private final LedgerClient ledgerClient;
+    private final TransferStore transferStore;
+    private final IdempotencyCache idempotencyCache;
+    private final TransferViewCache transferViewCache;
+    private final InFlightTransfers inFlightTransfers;
+    private final TransferEvents transferEvents;
+    private final LedgerCalls ledgerCalls;
+    private final AccountLanes accountLanes;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final TaskExecutor batchExecutor;
+    private final Scheduler persistenceScheduler;
+    private final TransferProperties properties;
+    private final TransferMetrics metrics;
 
-    @Transactional
-    public TransferResponse createTransfer(TransferRequest request, String idempotencyKey) {
+    /**
+     * Accepts a transfer for background processing ({@code Prefer: respond-async}). Only the
+     * reservation happens here; the PENDING row is the queue entry that
+     * {@link TransferQueueWorker} later sends to the ledger. A known key replays as usual, so
+     * the response is PENDING only while the work is still outstanding.
+     */
+    public Mono<TransferResponse> enqueueTransfer(TransferRequest request, String clientKey) {
         validateRequest(request);
+        Timer.Sample timer = metrics.start();
+        String idempotencyKey = IdempotencyKeys.ofClientKey(clientKey);
 
-        // Check idempotency
-        IdempotencyKey existing = keyRepository.findById(idempotencyKey).orElse(null);
-        if (existing != null) {
-            if (existing.getCreatedAt() != null &&
-                    existing.getCreatedAt().isBefore(LocalDateTime.now().minus(IDEMPOTENCY_TTL))) {
-                keyRepository.delete(existing);
-                log.info("Idempotency key expired; reprocessing. key={}", idempotencyKey);
-            } else {
-                Transfer t = existing.getTransfer();
-                log.info("Idempotent replay. key={}, transferId={}, status={}",
-                        idempotencyKey, t.getTransferId(), t.getStatus());
-                return TransferResponse.builder()
-                        .transferId(t.getTransferId())
-                        .status(t.getStatus())
-                        .message("Idempotent replay")
-                        .build();
-            }
+        Optional<TransferResponse> cached = idempotencyCache.replay(idempotencyKey);
+        if (cached.isPresent()) {
+            TransferResponse replay = cacheReplay(cached.get());
+            metrics.transferCompleted(timer, "queued", replay.getStatus());
+            return Mono.just(replay);
         }
 
-        String transferId = UUID.randomUUID().toString();
+        String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+        return onPersistence(correlationId, () -> {
+                    Reservation reservation = reserve(request, idempotencyKey, true);
+                    if (reservation.isReplay()) {
+                        remember(idempotencyKey, reservation, reservation.replay());
+                        return reservation.replay();
+                    }
+                    return TransferResponse.builder()
+                            .transferId(reservation.transferId())
+                            .status(Transfer.STATUS_PENDING)
+                            .message(TransferStore.QUEUED_MESSAGE)
+                            .build();
+                })
+                .doOnSuccess(r -> metrics.transferCompleted(timer, "queued", r.getStatus()));
+    }
 
-        // Call Ledger
-        TransferResponse ledgerResp = ledgerClient.transferToLedger(
-                transferId, request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+    /**
+     * Reserve (short tx) → ledger call (no connection held) → complete (short tx). Database
+     * steps run on the persistence scheduler and the ledger call is asynchronous, so no request
+     * thread waits on the ledger round-trip. Replays of a key whose ledger call is still in
+     * flight report PENDING; concurrent duplicates on this instance share the first request's
+     * result. Transfers from the same account wait for their {@link AccountLanes} turn first.
+     */
+    public Mono<TransferResponse> createTransferAsync(TransferRequest request, String clientKey) {
+        return createTransferAsync(request, IdempotencyKeys.ofClientKey(clientKey), null);
+    }
 
-        // Persist Transfer
-        Transfer saved = transferRepository.save(Transfer.builder()
-                .fromAccountId(request.getFromAccountId())
-                .toAccountId(request.getToAccountId())
-                .amount(request.getAmount())
-                .transferId(transferId)
-                .status(ledgerResp.getStatus())
-                .message(ledgerResp.getMessage())
-                .build());
+    /**
+     * Single transfers (no call) take their lane turn and get {@link LedgerOverloadedException}
+     * straight away when there is no permit, or once {@code transfer.lanes.max-wait} passes.
+     * Stream items skip the lanes and wait up to their item timeout for a permit. The wait is
+     * bounded here rather than by the caller, whose timeout does not reach this shared work, and
+     * the ledger is only called if {@link ItemCall#start} wins against that timeout.
+     */
+    private Mono<TransferResponse> createTransferAsync(TransferRequest request, String idempotencyKey,
+                                                       ItemCall call) {
+        validateRequest(request);
+        Timer.Sample timer = metrics.start();
+
+        Optional<TransferResponse> cached = idempotencyCache.replay(idempotencyKey);
+        if (cached.isPresent()) {
+            TransferResponse replay = cacheReplay(cached.get());
+            metrics.transferCompleted(timer, "async", replay.getStatus());
+            return Mono.just(replay);
+        }
+
+        String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+        Mono<Turn> lane = call != null
+                ? Mono.just(Turn.NONE)
+                : accountLanes.acquire(request.getFromAccountId());
+        Mono<Permit> admission = call != null
+                ? concurrencyLimiter.acquire()
+                        .timeout(properties.getStream().getItemTimeout(), Mono.error(LedgerOverloadedException::new))
+                : Mono.defer(() -> Mono.justOrEmpty(concurrencyLimiter.tryAcquire()))
+                        .switchIfEmpty(Mono.error(LedgerOverloadedException::new));
+        return inFlightTransfers.run(idempotencyKey,
+                        () -> {
+                            if (call != null) {
+                                call.lead();
+                            }
+                            return Mono.usingWhen(lane,
+                                    turn -> admission.flatMap(permit -> executeTransferAsync(request, idempotencyKey, correlationId, permit, call)
+                                            .doFinally(signal -> permit.release())),
+                                    turn -> Mono.fromRunnable(turn::release));
+                        })
+                .doOnSuccess(r -> metrics.transferCompleted(timer, "async", r != null ? r.getStatus() : null));
+    }
+
+    private Mono<TransferResponse> executeTransferAsync(TransferRequest request, String idempotencyKey,
+                                                        String correlationId, Permit permit, ItemCall call) {
+        return onPersistence(correlationId, () -> reserve(request, idempotencyKey))
+                .flatMap(reservation -> {
+                    if (reservation.isReplay()) {
+                        permit.release();
+                        remember(idempotencyKey, reservation, reservation.replay());
+                        return Mono.just(reservation.replay());
+                    }
+                    String transferId = reservation.transferId();
+                    if (call != null && !call.start(transferId)) {
+                        // the item timed out while this waited for its permit; it never reached the ledger
+                        permit.release();
+                        return onPersistence(correlationId, () -> {
+                            transferStore.completeAll(Map.of(), List.of(idempotencyKey));
+                            return transferId;
+                        }).then(Mono.<TransferResponse>empty());
+                    }
+                    return ledgerCalls.sendToLedger(transferId, request, permit)
+                            .flatMap(ledgerResp -> onPersistence(correlationId, () -> {
+                                complete(idempotencyKey, reservation, ledgerResp);
+                                return ledgerResp;
+                            }));
+                })
+                .contextWrite(ctx -> correlationId != null
+                        ? ctx.put(CorrelationIdFilter.MDC_KEY, correlationId)
+                        : ctx);
+    }
+
+    /**
+     * The primary key on idempotency_keys is the atomic guard: if another instance
+     * reserved the same key between our lookup and insert, the insert fails and the
+     * retry reads the winner's reservation instead of calling the ledger again. The same
+     * retry covers a key the filter let through without a lookup but which was in the
+     * table after all.
+     */
+    private Reservation reserve(TransferRequest request, String idempotencyKey) {
+        return reserve(request, idempotencyKey, false);
+    }
 
-        // Bind idempotency key
-        keyRepository.save(IdempotencyKey.builder()
-                .key(idempotencyKey)
-                .transfer(saved)
-                .build());
+    private Reservation reserve(TransferRequest request, String idempotencyKey, boolean queued) {
+        long start = System.nanoTime();
+        Reservation reservation;
+        try {
+            reservation = transferStore.reserve(request, idempotencyKey, queued);
+        } catch (DataIntegrityViolationException race) {
+            log.info("Idempotency key reserved concurrently; replaying winner. key={}", idempotencyKey);
+            transferStore.keyTaken(idempotencyKey);
+            reservation = transferStore.reserve(request, idempotencyKey, queued);
+        } finally {
+            metrics.dbStep("reserve", System.nanoTime() - start);
+        }
+        if (reservation.isReplay()) {
+            metrics.replayed(TransferMetrics.REPLAY_DB);
+        }
+        return reservation;
+    }
 
-        log.info("Transfer recorded. transferId={}, status={}", transferId, ledgerResp.getStatus());
-        return ledgerResp;
+    /**
+     * If the outcome cannot be recorded the row would replay PENDING until its key expires; the
+     * ledger call is over by now, so it is handed to {@link TransferQueueWorker} instead.
+     */
+    private void complete(String idempotencyKey, Reservation reservation, TransferResponse ledgerResp) {
+        long start = System.nanoTime();
+        try {
+            transferStore.complete(reservation.transferId(), ledgerResp);
+        } catch (RuntimeException e) {
+            recoverLater(List.of(reservation.transferId()), e);
+            throw e;
+        } finally {
+            metrics.dbStep("complete", System.nanoTime() - start);
+        }
+        remember(idempotencyKey, reservation, ledgerResp);
+        transferEvents.publish(reservation.transferId(), ledgerResp);
+    }
+
+    private void recoverLater(List<String> transferIds, RuntimeException cause) {
+        try {
+            transferStore.recoverLater(transferIds);
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
     }
 
-    public Transfer getByTransferId(String transferId) {
-        return transferRepository.findByTransferId(transferId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transfer not found"));
+    private TransferResponse cacheReplay(TransferResponse replay) {
+        metrics.replayed(TransferMetrics.REPLAY_CACHE);
+        return replay;
     }
 
-    /** Async batch processing using LedgerClient.transferToLedgerAsync */
+    private void remember(String idempotencyKey, Reservation reservation, TransferResponse outcome) {
+        idempotencyCache.putIfTerminal(idempotencyKey, reservation.transferId(),
+                outcome.getStatus(), reservation.keyCreatedAt());
+    }
+
+    /** Runs blocking JPA work on the persistence scheduler with the request's correlation id in MDC */
+    private <T> Mono<T> onPersistence(String correlationId, Callable<T> work) {
+        return Mono.fromCallable(() -> {
+            if (correlationId != null) {
+                MDC.put(CorrelationIdFilter.MDC_KEY, correlationId);
+            }
+            try {
+                return work.call();
+            } finally {
+                MDC.remove(CorrelationIdFilter.MDC_KEY);
+            }
+        }).subscribeOn(persistenceScheduler);
+    }
+
+    /**
+     * Terminal transfers come from {@link TransferViewCache}; anything else is read through the
+     * projection. Ids are matched in their stored lowercase form, whatever case they came in.
+     */
+    public TransferView getTransferView(String id) {
+        if (!TransferIds.isWellFormed(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Transfer not found");
+        }
+        String transferId = TransferIds.normalize(id);
+        return transferViewCache.get(transferId).orElseGet(() -> {
+            TransferView view = transferRepository.findViewByTransferId(transferId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transfer not found"));
+            transferViewCache.putIfTerminal(view);
+            return view;
+        });
+    }
+
+    /**
+     * Current state of each transfer, then its outcome as soon as it is recorded, until all are
+     * SUCCESS or FAILURE; see {@link TransferEvents#watch}. An unknown transferId fails with 404.
+     * Ids are watched in the lowercase form outcomes are published under.
+     */
+    public Flux<TransferResponse> watchTransfers(Collection<String> transferIds) {
+        int max = properties.getEvents().getMaxTransferIds();
+        Set<String> ids = new LinkedHashSet<>();
+        transferIds.forEach(id -> ids.add(TransferIds.normalize(id)));
+        if (ids.isEmpty() || ids.size() > max) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Watch between 1 and " + max + " transfers");
+        }
+        String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+        return transferEvents.watch(ids, transferId -> onPersistence(correlationId, () -> {
+            TransferView view = getTransferView(transferId);
+            return TransferResponse.builder()
+                    .transferId(view.getTransferId())
+                    .status(view.getStatus())
+                    .message(view.getMessage())
+                    .build();
+        }));
+    }
+
+    /**
+     * Persists the whole batch in two short transactions around the ledger calls: one reserves
+     * every new item (a single select for known keys, then batched INSERTs) and one records all
+     * outcomes (batched UPDATEs), instead of two or more statements per item. Ledger calls fan
+     * out over {@code batchExecutor}, at most {@code transfer.batch.concurrency} at a time.
+     * Results keep the request order; an invalid item, or one that gets no ledger permit within
+     * {@code transfer.batch.item-timeout}, is reported as FAILURE without failing the batch. An
+     * item whose ledger call is still out at the timeout is reported PENDING with its transferId.
+     */
     public List<TransferResponse> processBatch(List<TransferRequest> requests, String batchKey) {
-        if (requests.size() > 20) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch size cannot exceed 20");
+        TransferProperties.Batch cfg = properties.getBatch();
+        if (requests.size() > cfg.getMaxSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size cannot exceed " + cfg.getMaxSize());
+        }
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        Timer.Sample timer = metrics.start();
+        try {
+            return executeBatch(requests, batchKey);
+        } finally {
+            metrics.batchCompleted(timer, requests.size());
+        }
+    }
+
+    private List<TransferResponse> executeBatch(List<TransferRequest> requests, String batchKey) {
+        IdempotencyKeys.ItemKeys itemKeys = IdempotencyKeys.forBatch(batchKey);
+        List<String> keys = new ArrayList<>(requests.size());
+        TransferResponse[] responses = new TransferResponse[requests.size()];
+        // Identical items derive the same key and share one transfer
+        Map<String, TransferRequest> toReserve = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String key = itemKeys.of(request);
+            keys.add(key);
+            try {
+                validateRequest(request);
+            } catch (RuntimeException invalid) {
+                responses[i] = failedItem(i, key, invalid);
+                continue;
+            }
+            Optional<TransferResponse> cached = idempotencyCache.replay(key);
+            if (cached.isPresent()) {
+                responses[i] = cacheReplay(cached.get());
+            } else {
+                toReserve.putIfAbsent(key, request);
+            }
+        }
+
+        Map<String, Reservation> reservations = toReserve.isEmpty() ? Map.of() : reserveAll(toReserve);
+        Map<String, TransferResponse> outcomes = callLedgerForBatch(reservations, toReserve);
+        List<String> released = reservations.entrySet().stream()
+                .filter(e -> !e.getValue().isReplay() && !outcomes.containsKey(e.getKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        completeAll(reservations, outcomes, released);
+
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i] != null) {
+                continue;
+            }
+            String key = keys.get(i);
+            Reservation reservation = reservations.get(key);
+            responses[i] = reservation.isReplay() ? reservation.replay()
+                    : outcomes.containsKey(key) ? outcomes.get(key)
+                    : failedItem(i, key, new LedgerOverloadedException());
         }
-        MessageDigest sha256 = getSha256();
+        return Arrays.asList(responses);
+    }
+
+    private Map<String, Reservation> reserveAll(Map<String, TransferRequest> requestsByKey) {
+        long start = System.nanoTime();
+        Map<String, Reservation> reservations;
+        try {
+            reservations = transferStore.reserveAll(requestsByKey);
+        } catch (DataIntegrityViolationException race) {
+            log.info("Batch keys reserved concurrently; reserving item by item. items={}", requestsByKey.size());
+            reservations = new HashMap<>();
+            for (Map.Entry<String, TransferRequest> item : requestsByKey.entrySet()) {
+                reservations.put(item.getKey(), reserve(item.getValue(), item.getKey()));
+            }
+        } finally {
+            metrics.dbStep("reserve_batch", System.nanoTime() - start);
+        }
+        reservations.forEach((key, reservation) -> {
+            if (reservation.isReplay()) {
+                metrics.replayed(TransferMetrics.REPLAY_DB);
+                remember(key, reservation, reservation.replay());
+            }
+        });
+        return reservations;
+    }
+
+    /**
+     * Ledger outcomes by key for the freshly reserved items, each bounded by
+     * {@code transfer.batch.item-timeout}. Items that got no ledger permit in time are missing
+     * from the result: they never reached the ledger. An item whose ledger call is still out at
+     * the timeout comes back PENDING; the call records its own outcome when it returns.
+     */
+    private Map<String, TransferResponse> callLedgerForBatch(Map<String, Reservation> reservations,
+                                                             Map<String, TransferRequest> requestsByKey) {
+        List<String> fresh = reservations.entrySet().stream()
+                .filter(e -> !e.getValue().isReplay())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (fresh.isEmpty()) {
+            return Map.of();
+        }
+        TransferProperties.Batch cfg = properties.getBatch();
+        Scheduler scheduler = Schedulers.fromExecutor(batchExecutor);
+        int concurrency = Math.max(1, Math.min(cfg.getConcurrency(), fresh.size()));
+
+        return Flux.fromIterable(fresh)
+                .flatMap(key -> {
+                    Reservation reservation = reservations.get(key);
+                    String transferId = reservation.transferId();
+                    TransferRequest item = requestsByKey.get(key);
+                    ItemCall call = new ItemCall(true);
+                    // an item whose permit does not come in time is released, not failed
+                    return concurrencyLimiter.acquire()
+                            .timeout(cfg.getItemTimeout(), Mono.empty())
+                            .publishOn(scheduler)
+                            .<TransferResponse>handle((permit, sink) -> {
+                                try {
+                                    if (!call.start(transferId)) {
+                                        return;
+                                    }
+                                    // blocking on batchExecutor, so an item timeout never cancels a call on the wire
+                                    TransferResponse outcome = ledgerCalls.sendToLedger(transferId, item, permit).block();
+                                    if (!call.finish(outcome)) {
+                                        // answered PENDING at the timeout; record what the ledger said
+                                        complete(key, reservation, outcome);
+                                    }
+                                    sink.next(outcome);
+                                } finally {
+                                    permit.release();
+                                }
+                            })
+                            .doOnDiscard(Permit.class, Permit::release)
+                            .timeout(cfg.getItemTimeout(), Mono.defer(call::timedOut))
+                            .onErrorResume(ex -> Mono.just(LedgerCalls.ledgerFailure(transferId, ex)))
+                            .map(outcome -> Map.entry(key, outcome));
+                }, concurrency)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .block();
+    }
+
+    private void completeAll(Map<String, Reservation> reservations, Map<String, TransferResponse> outcomes,
+                             List<String> releasedKeys) {
+        Map<String, TransferResponse> byTransferId = new HashMap<>();
+        outcomes.forEach((key, outcome) -> {
+            // a PENDING outcome is a ledger call that outlived the item timeout and records itself
+            if (Transfer.isTerminal(outcome.getStatus())) {
+                byTransferId.put(reservations.get(key).transferId(), outcome);
+            }
+        });
+        if (byTransferId.isEmpty() && releasedKeys.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transferStore.completeAll(byTransferId, releasedKeys);
+        } catch (RuntimeException e) {
+            // answered items are over and released ones were never sent
+            List<String> unrecorded = new ArrayList<>(byTransferId.keySet());
+            releasedKeys.forEach(key -> unrecorded.add(reservations.get(key).transferId()));
+            recoverLater(unrecorded, e);
+            throw e;
+        } finally {
+            metrics.dbStep("complete_batch", System.nanoTime() - start);
+        }
+        outcomes.forEach((key, outcome) -> remember(key, reservations.get(key), outcome));
+        byTransferId.forEach(transferEvents::publish);
+    }
 
-        List<Mono<TransferResponse>> monos = requests.stream()
-                .map(req -> {
-                    String derivedKey = deriveKey(batchKey, req, sha256);
+    /**
+     * Processes an unbounded stream of transfers, e.g. an NDJSON upload, emitting one response
+     * per item in input order. At most {@code transfer.stream.concurrency} items are in flight and
+     * upstream is only asked for more as results are consumed, so memory stays bounded no matter
+     * how long the stream is. Items get the same derived keys as {@link #processBatch}, so
+     * re-sending a stream after an interruption replays the items that already went through.
+     * As in a batch, an item that gets no ledger permit within {@code transfer.stream.item-timeout}
+     * is FAILURE and never sent, and one whose ledger call is still out then is reported PENDING
+     * with its transferId. Malformed input ends the stream with a final FAILURE line once in-flight items have finished.
+     */
+    public Flux<TransferResponse> processStream(Flux<TransferRequest> requests, String batchKey) {
+        TransferProperties.Stream cfg = properties.getStream();
+        String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+        IdempotencyKeys.ItemKeys itemKeys = IdempotencyKeys.forBatch(batchKey);
+        AtomicLong items = new AtomicLong();
+        Timer.Sample timer = metrics.start();
 
-                    // Use async Ledger call
-                    return Mono.fromCallable(() -> {
-                        // Check idempotency & save Transfer like normal
-                        return createTransfer(req, derivedKey);
-                    });
+        return requests
+                .index((i, req) -> new StreamItem(i, req, itemKeys.of(req)))
+                .flatMapSequentialDelayError(item -> {
+                            ItemCall call = new ItemCall(false);
+                            // the transfer runs detached, so its own timeout lives in createTransferAsync
+                            return Mono.defer(() -> streamItem(item, correlationId, call))
+                                    .timeout(cfg.getItemTimeout(), Mono.defer(call::timedOut))
+                                    .switchIfEmpty(Mono.fromSupplier(() ->
+                                            failedItem(item.index(), item.key(), new LedgerOverloadedException())))
+                                    .onErrorResume(ex -> Mono.just(failedItem(item.index(), item.key(), ex)))
+                                    .doOnNext(r -> items.incrementAndGet());
+                        },
+                        Math.max(1, cfg.getConcurrency()), 1)
+                .onErrorResume(ex -> {
+                    log.warn("Transfer stream aborted after {} items. error={}", items.get(), ex.toString());
+                    return Mono.just(TransferResponse.builder()
+                            .status(Transfer.STATUS_FAILURE)
+                            .message("Stream aborted after " + items.get() + " items: " + ex.getMessage())
+                            .build());
                 })
-                .collect(Collectors.toList());
+                .doFinally(signal -> metrics.streamCompleted(timer, items.get(), signal.name()));
+    }
 
-        // Run all in parallel and block until completion
-        return Mono.zip(monos, results -> {
-            return List.of(results).stream()
-                    .map(r -> (TransferResponse) r)
-                    .collect(Collectors.toList());
-        }).block();
+    private Mono<TransferResponse> streamItem(StreamItem item, String correlationId, ItemCall call) {
+        // createTransferAsync picks the correlation id up from the calling thread
+        if (correlationId != null) {
+            MDC.put(CorrelationIdFilter.MDC_KEY, correlationId);
+        }
+        try {
+            return createTransferAsync(item.request(), item.key(), call);
+        } finally {
+            MDC.remove(CorrelationIdFilter.MDC_KEY);
+        }
+    }
+
+    private record StreamItem(long index, TransferRequest request, String key) {
+    }
+
+    /**
+     * One batch or stream item's ledger call racing its item timeout. Whichever side gets there
+     * second knows what the other did: a timeout before the call releases the item, a timeout
+     * during it answers PENDING and leaves the call to record its outcome, and a call finishing
+     * after the timeout records that outcome itself. A stream item that joined an identical one
+     * already in flight never calls the ledger itself, and times out PENDING like its leader.
+     */
+    private static final class ItemCall {
+
+        private static final Object CALLING = new Object();
+        private static final Object TIMED_OUT = new Object();
+
+        private final AtomicReference<Object> state = new AtomicReference<>();
+        private volatile String transferId;
+        private volatile boolean leading;
+
+        ItemCall(boolean leading) {
+            this.leading = leading;
+        }
+
+        /** This item runs the transfer rather than joining one in flight */
+        void lead() {
+            leading = true;
+        }
+
+        /** False once the item has timed out: the ledger must not be called */
+        boolean start(String transferId) {
+            this.transferId = transferId;
+            return state.compareAndSet(null, CALLING);
+        }
+
+        /** False if the item timed out while the call was out */
+        boolean finish(TransferResponse outcome) {
+            return state.compareAndSet(CALLING, outcome);
+        }
+
+        /** Empty if the ledger was never called */
+        Mono<TransferResponse> timedOut() {
+            if (!leading) {
+                // the transferId is the leader's to report
+                return Mono.just(pending(null));
+            }
+            if (state.compareAndSet(null, TIMED_OUT)) {
+                return Mono.empty();
+            }
+            if (state.compareAndSet(CALLING, TIMED_OUT)) {
+                log.warn("Bulk item ledger call outlived the item timeout; answering PENDING. transferId={}", transferId);
+                return Mono.just(pending(transferId));
+            }
+            // finished just as the timeout fired
+            return Mono.just((TransferResponse) state.get());
+        }
+    }
+
+    /** A timed-out item the ledger has, or may still get through an identical item */
+    private static TransferResponse pending(String transferId) {
+        return TransferResponse.builder()
+                .transferId(transferId)
+                .status(Transfer.STATUS_PENDING)
+                .message("Timed out; retry with the same Idempotency-Key to get the final status")
+                .build();
+    }
+
+    private static TransferResponse failedItem(long index, String key, Throwable ex) {
+        String reason = ex instanceof ResponseStatusException status ? status.getReason()
+                : (ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName());
+        log.warn("Batch item failed. index={}, key={}, error={}", index, key, ex.toString());
+        return TransferResponse.builder()
+                .status(Transfer.STATUS_FAILURE)
+                .message(reason)
+                .build();
     }
 
     private void validateRequest(TransferRequest r) {
@@ -127,19 +610,4 @@ public class TransferService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "amount must be > 0");
         }
     }
-
-    private static MessageDigest getSha256() {
-        try {
-            return MessageDigest.getInstance("SHA-256");
-        } catch (Exception e) {
-            throw new IllegalStateException("SHA-256 unavailable", e);
-        }
-    }
-
-    /** Derive a stable key per item: header + SHA256(from|to|amount) */
-    private static String deriveKey(String batchKey, TransferRequest r, MessageDigest md) {
-        String payload = r.getFromAccountId() + "|" + r.getToAccountId() + "|" + r.getAmount();
-        byte[] digest = md.digest(payload.getBytes());
-        return batchKey + ":" + HexFormat.of().formatHex(digest);
-    }
 }
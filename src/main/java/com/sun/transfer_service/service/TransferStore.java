@@ -0,0 +1,267 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.model.IdempotencyKey;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.model.TransferIds;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.TransferRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Database side of a transfer. A transfer is reserved (PENDING) and completed in
+ * two separate short transactions, so no connection is held while the ledger call
+ * is in flight. Kept apart from {@link TransferService} so each step goes through
+ * the transactional proxy and can be scheduled off the request thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferStore.class);
+
+    static final String QUEUED_MESSAGE = "Queued for processing";
+
+    private final TransferRepository transferRepository;
+    private final IdempotencyKeyRepository keyRepository;
+    private final TransferProperties properties;
+    private final IdempotencyKeyFilter keyFilter;
+
+    /**
+     * Stage 1 (short transaction): returns the previous outcome for a known key, or
+     * inserts a PENDING transfer and binds the key to it. An expired key is removed
+     * and reserved again. A key {@link IdempotencyKeyFilter} has never seen is inserted
+     * without the lookup; if it exists after all, the insert fails on the primary key and
+     * the caller retries after {@link #keyTaken}.
+     */
+    @Transactional
+    public Reservation reserve(TransferRequest request, String idempotencyKey) {
+        return reserve(request, idempotencyKey, false);
+    }
+
+    /**
+     * As {@link #reserve(TransferRequest, String)}; when {@code queued} the PENDING row is left
+     * for {@link TransferQueueWorker} to send to the ledger instead of the caller.
+     */
+    @Transactional
+    public Reservation reserve(TransferRequest request, String idempotencyKey, boolean queued) {
+        IdempotencyKey existing = null;
+        if (keyFilter.mightContain(idempotencyKey)) {
+            existing = keyRepository.findById(idempotencyKey).orElse(null);
+            if (existing == null) {
+                keyFilter.falsePositive();
+            }
+        }
+        if (existing != null) {
+            if (existing.getCreatedAt() != null &&
+                    existing.getCreatedAt().isBefore(LocalDateTime.now().minus(properties.getIdempotency().getTtl()))) {
+                keyRepository.delete(existing);
+                keyRepository.flush();
+                log.info("Idempotency key expired; reprocessing. key={}", idempotencyKey);
+            } else {
+                return replayOf(existing);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Transfer pending = transferRepository.save(pendingTransfer(request, queued, now));
+        String transferId = pending.getTransferId();
+
+        // Flushed here so a concurrent reservation of the same key fails this call,
+        // rolling back the PENDING insert, rather than surfacing at commit
+        keyRepository.saveAndFlush(IdempotencyKey.builder()
+                .key(idempotencyKey)
+                .transfer(pending)
+                .build());
+        keyFilter.add(idempotencyKey);
+
+        return Reservation.reserved(transferId, now);
+    }
+
+    /**
+     * Reserving the key failed on the primary key: it exists, so the next {@link #reserve}
+     * looks it up instead of trusting the filter again
+     */
+    public void keyTaken(String idempotencyKey) {
+        keyFilter.add(idempotencyKey);
+    }
+
+    /**
+     * Leases up to {@code max} queued transfers for {@code lease}. Each row is claimed with a
+     * conditional update, so several workers or instances can poll the same table safely.
+     */
+    @Transactional
+    public List<Transfer> claimQueued(int max, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(lease);
+        List<Transfer> claimed = new ArrayList<>();
+        for (Transfer candidate : transferRepository.findClaimable(now, Limit.of(max))) {
+            if (transferRepository.claim(candidate.getId(), now, until) == 1) {
+                claimed.add(candidate);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Batch form of {@link #reserve(TransferRequest, String)} in one transaction: known keys come
+     * back in a single select (skipped when the filter has seen none of them), new transfers and
+     * keys go out as batched INSERTs. If another request reserves one of the keys meanwhile, the
+     * flush fails and nothing is kept; callers fall back to reserving item by item.
+     */
+    @Transactional
+    public Map<String, Reservation> reserveAll(Map<String, TransferRequest> requestsByKey) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiredBefore = now.minus(properties.getIdempotency().getTtl());
+        Map<String, Reservation> reservations = new HashMap<>();
+
+        List<IdempotencyKey> expired = new ArrayList<>();
+        List<String> maybeKnown = requestsByKey.keySet().stream().filter(keyFilter::mightContain).toList();
+        List<IdempotencyKey> known = maybeKnown.isEmpty() ? List.of() : keyRepository.findAllWithTransfer(maybeKnown);
+        for (IdempotencyKey existing : known) {
+            if (existing.getCreatedAt() != null && existing.getCreatedAt().isBefore(expiredBefore)) {
+                expired.add(existing);
+            } else {
+                reservations.put(existing.getKey(), replayOf(existing));
+            }
+        }
+        if (!expired.isEmpty()) {
+            keyRepository.deleteAll(expired);
+            keyRepository.flush();
+            log.info("Idempotency keys expired; reprocessing. count={}", expired.size());
+        }
+
+        List<Transfer> transfers = new ArrayList<>();
+        List<IdempotencyKey> keys = new ArrayList<>();
+        requestsByKey.forEach((key, request) -> {
+            if (!reservations.containsKey(key)) {
+                Transfer pending = pendingTransfer(request, false, now);
+                transfers.add(pending);
+                keys.add(IdempotencyKey.builder().key(key).transfer(pending).build());
+                reservations.put(key, Reservation.reserved(pending.getTransferId(), now));
+            }
+        });
+        transferRepository.saveAll(transfers);
+        keyRepository.saveAll(keys);
+        keyRepository.flush();
+        keys.forEach(key -> keyFilter.add(key.getKey()));
+        return reservations;
+    }
+
+    /**
+     * Batch form of {@link #complete}: one select and batched UPDATEs for the outcomes. Keys in
+     * {@code releasedKeys} never reached the ledger; they are deleted with their transfers so a
+     * retry with the same key starts afresh.
+     */
+    @Transactional
+    public void completeAll(Map<String, TransferResponse> outcomesByTransferId, Collection<String> releasedKeys) {
+        if (!outcomesByTransferId.isEmpty()) {
+            for (Transfer transfer : transferRepository.findAllByTransferIdIn(outcomesByTransferId.keySet())) {
+                TransferResponse outcome = outcomesByTransferId.get(transfer.getTransferId());
+                transfer.setStatus(outcome.getStatus());
+                transfer.setMessage(outcome.getMessage());
+            }
+        }
+        if (!releasedKeys.isEmpty()) {
+            List<Transfer> orphans = keyRepository.findAllWithTransfer(releasedKeys).stream()
+                    .map(IdempotencyKey::getTransfer)
+                    .toList();
+            keyRepository.deleteByKeyIn(releasedKeys);
+            transferRepository.deleteAllInBatch(orphans);
+        }
+        log.info("Batch recorded. transfers={}, released={}", outcomesByTransferId.size(), releasedKeys.size());
+    }
+
+    /** Stage 3 (short transaction): records the ledger outcome on the reserved transfer */
+    @Transactional
+    public void complete(String transferId, TransferResponse ledgerResp) {
+        transferRepository.updateOutcome(transferId, ledgerResp.getStatus(), ledgerResp.getMessage());
+        log.info("Transfer recorded. transferId={}, status={}", transferId, ledgerResp.getStatus());
+    }
+
+    /**
+     * Hands inline transfers whose outcome could not be recorded to {@link TransferQueueWorker}.
+     * Only called once their ledger calls are over, so the worker never sends one while the
+     * caller's call is still out. Rows already completed or leased are left alone.
+     */
+    @Transactional
+    public int recoverLater(Collection<String> transferIds) {
+        int leased = transferRepository.leaseForRecovery(transferIds, LocalDateTime.now());
+        log.warn("Transfers left for the queue worker to recover. transferIds={}, leased={}", transferIds, leased);
+        return leased;
+    }
+
+    /**
+     * Hands inline transfers still PENDING since before {@code createdBefore} to
+     * {@link TransferQueueWorker}: the instance that reserved them went away before recording an
+     * outcome, and otherwise their keys would replay PENDING until they expire.
+     */
+    @Transactional
+    public int recoverStale(LocalDateTime createdBefore) {
+        int leased = transferRepository.leaseStale(createdBefore, LocalDateTime.now());
+        if (leased > 0) {
+            log.warn("Stale inline transfers left for the queue worker to recover. createdBefore={}, leased={}",
+                    createdBefore, leased);
+        }
+        return leased;
+    }
+
+    /**
+     * A queued row is claimable straight away. One sent to the ledger by the caller has no lease:
+     * the worker must never send it while the caller's call may still be out. It only becomes
+     * claimable through {@link #recoverLater}, or {@link #recoverStale} once it is old enough.
+     */
+    private Transfer pendingTransfer(TransferRequest request, boolean queued, LocalDateTime now) {
+        return Transfer.builder()
+                .fromAccountId(request.getFromAccountId())
+                .toAccountId(request.getToAccountId())
+                .amount(request.getAmount())
+                .transferId(TransferIds.newId())
+                .status(Transfer.STATUS_PENDING)
+                .message(queued ? QUEUED_MESSAGE : "Awaiting ledger")
+                .leaseExpiresAt(queued ? now : null)
+                .build();
+    }
+
+    private static Reservation replayOf(IdempotencyKey existing) {
+        Transfer t = existing.getTransfer();
+        log.info("Idempotent replay. key={}, transferId={}, status={}",
+                existing.getKey(), t.getTransferId(), t.getStatus());
+        return Reservation.replay(TransferResponse.builder()
+                .transferId(t.getTransferId())
+                .status(t.getStatus())
+                .message("Idempotent replay")
+                .build(), existing.getCreatedAt());
+    }
+
+    /** Outcome of {@link #reserve}: either a fresh transferId to send to the ledger, or a replayed response */
+    public record Reservation(String transferId, TransferResponse replay, LocalDateTime keyCreatedAt) {
+
+        static Reservation reserved(String transferId, LocalDateTime keyCreatedAt) {
+            return new Reservation(transferId, null, keyCreatedAt);
+        }
+
+        static Reservation replay(TransferResponse response, LocalDateTime keyCreatedAt) {
+            return new Reservation(response.getTransferId(), response, keyCreatedAt);
+        }
+
+        public boolean isReplay() {
+            return replay != null;
+        }
+    }
+}
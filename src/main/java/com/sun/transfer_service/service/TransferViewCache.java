@@ -0,0 +1,43 @@
+package com.sun.transfer_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferView;
+import com.sun.transfer_service.model.Transfer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Bounded in-memory map of transferId → view for transfers that reached SUCCESS or FAILURE.
+ * Those never change, so status polls for them are answered without touching the database;
+ * PENDING transfers are always read fresh. Publishes {@code cache.*} metrics under
+ * {@code cache=transfer_status}.
+ */
+@Component
+public class TransferViewCache {
+
+    private final Cache<String, TransferView> cache;
+
+    public TransferViewCache(TransferProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getStatusCache().getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "transfer_status");
+    }
+
+    public Optional<TransferView> get(String transferId) {
+        return Optional.ofNullable(cache.getIfPresent(transferId));
+    }
+
+    /** Remembers a terminal view; PENDING views are ignored */
+    public void putIfTerminal(TransferView view) {
+        if (Transfer.isTerminal(view.getStatus())) {
+            cache.put(view.getTransferId(), view);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+-- Partitioned schema for PostgreSQL 12+, used with the "partitioned" profile
+-- (spring.jpa.hibernate.ddl-auto=none). Child partitions are created and dropped at runtime
+-- by PostgresPartitionManager; nothing here has to change as time passes.
+
+create sequence if not exists transfers_seq increment by 50;
+
+-- Monthly ranges of transfer_id: ids are UUID v7, so they sort by creation time.
+-- Keys on a partitioned table must include the partition column, hence (id, transfer_id).
+create table if not exists transfers (
+    id               bigint         not null,
+    transfer_id      uuid           not null,
+    from_account_id  bigint         not null,
+    to_account_id    bigint         not null,
+    amount           numeric(19, 2) not null,
+    status           varchar(255)   not null,
+    message          varchar(255),
+    created_at       timestamp(6),
+    lease_expires_at timestamp(6),
+    primary key (id, transfer_id)
+) partition by range (transfer_id);
+
+create unique index if not exists idx_transfer_transferId on transfers (transfer_id);
+create index if not exists idx_transfers_status_lease on transfers (status, lease_expires_at);
+-- Account history: the included columns are everything TransferHistoryEntry selects, so a page
+-- is an index-only scan once the visibility map is current
+create index if not exists idx_transfers_from_created on transfers (from_account_id, created_at, id)
+    include (to_account_id, transfer_id, amount, status);
+create index if not exists idx_transfers_to_created on transfers (to_account_id, created_at, id)
+    include (from_account_id, transfer_id, amount, status);
+
+-- Daily ranges of created_day, filled in by the database on insert. The primary key still
+-- rejects a duplicate key within a day; across midnight only the lookup in TransferStore.reserve
+-- guards against it, which is why IdempotencyKeyFilter never skips that lookup here. There is
+-- no foreign key to transfers: one would need a unique constraint on transfers.id alone, which
+-- a table partitioned by transfer_id cannot have.
+create table if not exists idempotency_keys (
+    "key"       bytea        not null,
+    created_day date         not null default current_date,
+    created_at  timestamp(6),
+    transfer_id bigint       not null,
+    primary key ("key", created_day)
+) partition by range (created_day);
+
+create index if not exists idx_idempotency_keys_created_at on idempotency_keys (created_at);
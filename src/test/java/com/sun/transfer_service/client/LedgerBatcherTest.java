@@ -0,0 +1,190 @@
+package com.sun.transfer_service.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives LedgerBatcher against a stub ledger on a local port that answers
+ * bulk requests, recording how many transfers each bulk carried.
+ */
+class LedgerBatcherTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Integer> bulkSizes = new CopyOnWriteArrayList<>();
+    private volatile Duration ledgerDelay = Duration.ZERO;
+    private HttpServer stubLedger;
+    private LedgerProperties properties;
+    private WebClient webClient;
+    private LedgerBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stubLedger = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubLedger.createContext("/ledger/transfer/bulk", exchange -> {
+            JsonNode items = mapper.readTree(exchange.getRequestBody());
+            try {
+                Thread.sleep(ledgerDelay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            bulkSizes.add(items.size());
+            ArrayNode results = mapper.createArrayNode();
+            // Answer in reverse order: callers must be matched by transferId, not position
+            for (int i = items.size() - 1; i >= 0; i--) {
+                results.addObject()
+                        .put("transferId", items.get(i).get("transferId").asText())
+                        .put("status", "SUCCESS")
+                        .put("message", "amount=" + items.get(i).get("amount").asText());
+            }
+            byte[] body = mapper.writeValueAsBytes(results);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubLedger.setExecutor(Executors.newCachedThreadPool());
+        stubLedger.start();
+
+        properties = new LedgerProperties();
+        properties.getBatching().setEnabled(true);
+        properties.getBatching().setWindow(Duration.ofMillis(200));
+        properties.getBatching().setMaxItems(3);
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + stubLedger.getAddress().getPort())
+                .build();
+        batcher = new LedgerBatcher(webClient, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        stubLedger.stop(0);
+    }
+
+    @Test
+    void concurrentCalls_areSentAsOneBulk_andFannedBackByTransferId() {
+        // Act
+        List<TransferResponse> results = Flux.range(1, 3)
+                .flatMap(i -> batcher.submit(new LedgerTransfer("tx-" + i, 1L, 2L, BigDecimal.valueOf(i))))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Assert
+        assertEquals(List.of(3), bulkSizes);
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        results.forEach(r -> {
+            assertEquals("SUCCESS", r.getStatus());
+            String n = r.getTransferId().substring("tx-".length());
+            assertEquals("amount=" + n, r.getMessage());
+        });
+    }
+
+    @Test
+    void callersSubmittingAtOnce_areAllQueued_noneTurnedAway() {
+        // Arrange: 16 threads released together, each submitting 25 calls
+        properties.getBatching().setMaxItems(50);
+        batcher.shutdown();
+        batcher = new LedgerBatcher(webClient, properties);
+        CountDownLatch go = new CountDownLatch(1);
+
+        // Act
+        List<TransferResponse> results = Flux.range(0, 16)
+                .flatMap(t -> Mono.fromCallable(() -> {
+                            go.await();
+                            return t;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapMany(thread -> Flux.range(0, 25)
+                                .map(i -> batcher.submit(new LedgerTransfer("tx-" + thread + "-" + i, 1L, 2L, BigDecimal.ONE)))
+                                .collectList()
+                                .flatMapMany(Flux::merge)), 16)
+                .doOnSubscribe(s -> go.countDown())
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        // Assert
+        assertNotNull(results);
+        assertEquals(400, results.size());
+        assertEquals(400, bulkSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void slowBulks_withMoreWindowsThanConcurrentBulks_stillAnswerEveryCall() {
+        // Arrange: each bulk takes 10 windows and only one may be in flight
+        batcher.shutdown();
+        ledgerDelay = Duration.ofMillis(200);
+        properties.getBatching().setWindow(Duration.ofMillis(20));
+        properties.getBatching().setMaxItems(2);
+        properties.getBatching().setMaxConcurrentBulks(1);
+        batcher = new LedgerBatcher(webClient, properties);
+
+        // Act: one call every 30ms, so windows close while the only bulk is still out
+        List<TransferResponse> results = Flux.range(1, 8)
+                .delayElements(Duration.ofMillis(30))
+                .flatMap(i -> batcher.submit(new LedgerTransfer("tx-" + i, 1L, 2L, BigDecimal.valueOf(i))))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        TransferResponse after = batcher.submit(new LedgerTransfer("after", 1L, 2L, BigDecimal.ONE))
+                .block(Duration.ofSeconds(5));
+
+        // Assert
+        assertNotNull(results);
+        assertEquals(8, results.size());
+        assertTrue(bulkSizes.stream().allMatch(size -> size <= 2), "bulks: " + bulkSizes);
+        assertNotNull(after);
+        assertEquals("SUCCESS", after.getStatus());
+    }
+
+    @Test
+    void fullQueue_failsNewCallsStraightAway() {
+        // Arrange: the only bulk slot is taken by a slow bulk and the queue holds one call
+        batcher.shutdown();
+        ledgerDelay = Duration.ofSeconds(1);
+        properties.getBatching().setMaxItems(1);
+        properties.getBatching().setMaxConcurrentBulks(1);
+        properties.getBatching().setMaxQueued(1);
+        batcher = new LedgerBatcher(webClient, properties);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            batcher.submit(new LedgerTransfer("tx-" + i, 1L, 2L, BigDecimal.ONE)).subscribe(r -> { }, errors::add);
+        }
+
+        // Assert: the few calls the pipeline can hold wait, the rest fail without waiting
+        assertTrue(errors.size() >= 5, "rejected: " + errors.size());
+        assertTrue(errors.stream().allMatch(e -> e instanceof IllegalStateException));
+    }
+
+    @Test
+    void loneCall_isFlushedWhenTheWindowCloses() {
+        TransferResponse result = batcher.submit(new LedgerTransfer("solo", 1L, 2L, BigDecimal.TEN))
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(result);
+        assertEquals("solo", result.getTransferId());
+        assertEquals(List.of(1), bulkSizes);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sun.transfer_service.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppConfigTest {
+
+    private final AppConfig appConfig = new AppConfig();
+
+    @AfterEach
+    void clearMdc() {
+        MDC.clear();
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void batchExecutor_virtualRequestedBeforeJava21_fallsBackToPool() {
+        // Arrange
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+
+        // Act
+        TaskExecutor executor = appConfig.batchExecutor(environment);
+
+        // Assert
+        assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+        ((ThreadPoolTaskExecutor) executor).shutdown();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void batchExecutor_virtualThreads_carryCallerMdc() throws Exception {
+        // Arrange
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+        TaskExecutor executor = appConfig.batchExecutor(environment);
+        MDC.put(CorrelationIdFilter.MDC_KEY, "req-42");
+        CompletableFuture<String> seen = new CompletableFuture<>();
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+
+        // Act
+        executor.execute(() -> {
+            seen.complete(MDC.get(CorrelationIdFilter.MDC_KEY));
+            try {
+                // Thread.isVirtual() is Java 21 API; the default build compiles for 17
+                virtual.complete((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            } catch (ReflectiveOperationException e) {
+                virtual.completeExceptionally(e);
+            }
+        });
+
+        // Assert
+        assertEquals("req-42", seen.get(5, TimeUnit.SECONDS));
+        assertTrue(virtual.get(5, TimeUnit.SECONDS));
+    }
+}
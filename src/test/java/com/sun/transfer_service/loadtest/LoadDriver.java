@@ -0,0 +1,195 @@
+package com.sun.transfer_service.loadtest;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop traffic generator: {@code users} threads each send a request, wait for
+ * the answer and send the next, for {@code duration}. A share of requests go to
+ * {@code /transfer/batch}, and a share resend a recent request unchanged, same
+ * Idempotency-Key and same body, the way a retrying client would.
+ *
+ * <p>Closed-loop load slows down with the server, so latency under overload is
+ * understated (coordinated omission); compare runs at equal user counts.
+ */
+public class LoadDriver {
+
+    public record Settings(String baseUrl, int users, Duration duration,
+                           double batchRatio, int batchSize, double keyReuseRatio, long accounts) {
+    }
+
+    private static final int RECENT_KEYS = 1024;
+
+    /** A request as first sent, kept so a retry can resend it byte for byte */
+    private record Sent(String key, String body) {
+    }
+
+    private final Settings settings;
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Sent> recentSingles = new AtomicReferenceArray<>(RECENT_KEYS);
+    private final AtomicReferenceArray<Sent> recentBatches = new AtomicReferenceArray<>(RECENT_KEYS);
+
+    public LoadDriver(Settings settings) {
+        this.settings = settings;
+    }
+
+    public Report run() throws InterruptedException {
+        long deadline = System.nanoTime() + settings.duration().toNanos();
+        CountDownLatch done = new CountDownLatch(settings.users());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < settings.users(); i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        sendOne();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-user-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        done.await();
+        return new Report(Duration.ofNanos(System.nanoTime() - start), registry, outcomes);
+    }
+
+    private void sendOne() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean batch = random.nextDouble() < settings.batchRatio();
+        AtomicReferenceArray<Sent> recent = batch ? recentBatches : recentSingles;
+        int slot = random.nextInt(RECENT_KEYS);
+
+        Sent sent = null;
+        boolean retry = random.nextDouble() < settings.keyReuseRatio();
+        if (retry) {
+            sent = recent.get(slot);
+        }
+        if (sent == null) {
+            retry = false;
+            sent = new Sent(UUID.randomUUID().toString(), batch ? batchBody(random) : transferBody(random));
+            recent.set(slot, sent);
+        }
+
+        String kind = (batch ? "batch" : "single") + (retry ? "-retry" : "");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(settings.baseUrl() + (batch ? "/transfer/batch" : "/transfer")))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", sent.key())
+                .POST(HttpRequest.BodyPublishers.ofString(sent.body()))
+                .build();
+
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            outcome = classify(response);
+        } catch (Exception e) {
+            outcome = "client-error:" + e.getClass().getSimpleName();
+        }
+        timer(kind).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        outcomes.computeIfAbsent(kind + " " + outcome, k -> new LongAdder()).increment();
+    }
+
+    private static String classify(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            return "http-" + response.statusCode();
+        }
+        String body = response.body();
+        if (body.contains("Idempotent replay")) {
+            return "replay";
+        }
+        if (body.contains("\"FAILURE\"")) {
+            return body.contains("Ledger service unavailable") ? "fallback" : "failure";
+        }
+        return body.contains("\"PENDING\"") ? "pending" : "success";
+    }
+
+    private Timer timer(String kind) {
+        return Timer.builder("load." + kind)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    private String transferBody(ThreadLocalRandom random) {
+        long from = random.nextLong(1, settings.accounts() + 1);
+        long to = from % settings.accounts() + 1;
+        return "{\"fromAccountId\":" + from + ",\"toAccountId\":" + to
+                + ",\"amount\":" + random.nextInt(1, 10_000) + ".00}";
+    }
+
+    private String batchBody(ThreadLocalRandom random) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < settings.batchSize(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(transferBody(random));
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Throughput, latency percentiles per request kind, and response outcome counts */
+    public record Report(Duration elapsed, SimpleMeterRegistry registry, Map<String, LongAdder> outcomes) {
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            long total = registry.getMeters().stream()
+                    .filter(Timer.class::isInstance)
+                    .mapToLong(m -> ((Timer) m).count())
+                    .sum();
+            sb.append(String.format("requests=%d elapsed=%.1fs throughput=%.1f req/s%n",
+                    total, elapsed.toMillis() / 1000.0, total * 1000.0 / Math.max(1, elapsed.toMillis())));
+            registry.getMeters().stream()
+                    .filter(Timer.class::isInstance)
+                    .map(Timer.class::cast)
+                    .sorted((a, b) -> a.getId().getName().compareTo(b.getId().getName()))
+                    .forEach(t -> {
+                        HistogramSnapshot snapshot = t.takeSnapshot();
+                        sb.append(String.format("  %-22s n=%-8d mean=%7.1fms",
+                                t.getId().getName().substring("load.".length()), t.count(),
+                                snapshot.mean(TimeUnit.MILLISECONDS)));
+                        for (ValueAtPercentile p : snapshot.percentileValues()) {
+                            sb.append(String.format(" p%s=%.1fms", trim(p.percentile() * 100),
+                                    p.value(TimeUnit.MILLISECONDS)));
+                        }
+                        sb.append(String.format(" max=%.1fms%n", snapshot.max(TimeUnit.MILLISECONDS)));
+                    });
+            sb.append("outcomes:\n");
+            outcomes.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> sb.append(String.format("  %-40s %d%n", e.getKey(), e.getValue().sum())));
+            return sb.toString();
+        }
+
+        private static String trim(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+        }
+    }
+}
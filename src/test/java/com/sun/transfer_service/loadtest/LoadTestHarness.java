@@ -0,0 +1,143 @@
+package com.sun.transfer_service.loadtest;
+
+import com.sun.transfer_service.TransferServiceApplication;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the whole service locally against {@link StubLedgerServer} and drives it with
+ * {@link LoadDriver}; no outside services needed.
+ *
+ * <pre>
+ *   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="users=64 duration=60s outageAt=20s outageFor=15s"
+ * </pre>
+ *
+ * Options (key=value): users, duration, batchRatio, batchSize, keyReuse, accounts,
+ * ledgerMedian, ledgerP99, ledgerErrors, ledgerTimeouts, ledgerHang, outageAt, outageFor.
+ * Any other {@code --spring.property=value} argument is passed to the application.
+ */
+public class LoadTestHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                opts.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        StubLedgerServer.Behaviour normal = new StubLedgerServer.Behaviour(
+                duration(opts, "ledgerMedian", "20ms"),
+                duration(opts, "ledgerP99", "150ms"),
+                Double.parseDouble(opts.getOrDefault("ledgerErrors", "0.01")),
+                Double.parseDouble(opts.getOrDefault("ledgerTimeouts", "0.001")),
+                duration(opts, "ledgerHang", "10s"));
+        StubLedgerServer.Behaviour outage = new StubLedgerServer.Behaviour(
+                normal.medianLatency(), normal.p99Latency(), 1.0, 0.0, normal.hangFor());
+
+        // devtools would re-run this main in a restart class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (StubLedgerServer ledger = new StubLedgerServer(normal)) {
+            addDefault(appArgs, "server.port", "0");
+            addDefault(appArgs, "ledger.base-url", ledger.baseUrl());
+            addDefault(appArgs, "spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+            addDefault(appArgs, "logging.level.root", "WARN");
+            // every fallback logs at ERROR; the meters below summarise them instead
+            addDefault(appArgs, "logging.level.com.sun.transfer_service.client", "OFF");
+            ConfigurableApplicationContext app = new SpringApplicationBuilder(TransferServiceApplication.class)
+                    .run(appArgs.toArray(String[]::new));
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+
+            List<String> transitions = new CopyOnWriteArrayList<>();
+            CircuitBreaker breaker = app.getBean(CircuitBreakerRegistry.class).circuitBreaker("ledger");
+            Instant started = Instant.now();
+            breaker.getEventPublisher().onStateTransition(e -> transitions.add(String.format("+%5.1fs %s",
+                    Duration.between(started, e.getCreationTime().toInstant()).toMillis() / 1000.0,
+                    e.getStateTransition())));
+
+            ScheduledExecutorService chaos = Executors.newSingleThreadScheduledExecutor();
+            if (opts.containsKey("outageAt")) {
+                Duration at = duration(opts, "outageAt", "0s");
+                Duration length = duration(opts, "outageFor", "10s");
+                chaos.schedule(() -> ledger.setBehaviour(outage), at.toMillis(), TimeUnit.MILLISECONDS);
+                chaos.schedule(() -> ledger.setBehaviour(normal), at.plus(length).toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            LoadDriver.Settings settings = new LoadDriver.Settings(
+                    "http://localhost:" + port,
+                    Integer.parseInt(opts.getOrDefault("users", "32")),
+                    duration(opts, "duration", "30s"),
+                    Double.parseDouble(opts.getOrDefault("batchRatio", "0.1")),
+                    Integer.parseInt(opts.getOrDefault("batchSize", "20")),
+                    Double.parseDouble(opts.getOrDefault("keyReuse", "0.1")),
+                    Long.parseLong(opts.getOrDefault("accounts", "10000")));
+            LoadDriver.Report report = new LoadDriver(settings).run();
+            chaos.shutdownNow();
+
+            System.out.println("==== client view ====");
+            System.out.print(report.format());
+            System.out.println("==== ledger stub ====");
+            System.out.printf("calls=%d errors=%d hangs=%d%n", ledger.calls(), ledger.errors(), ledger.hangs());
+            System.out.println("==== circuit breaker 'ledger' ====");
+            System.out.println("final state=" + breaker.getState()
+                    + " failureRate=" + breaker.getMetrics().getFailureRate()
+                    + " notPermitted=" + breaker.getMetrics().getNumberOfNotPermittedCalls());
+            transitions.forEach(t -> System.out.println("  " + t));
+            System.out.println("==== service meters ====");
+            printServiceMeters(app.getBean(MeterRegistry.class));
+
+            app.close();
+        }
+    }
+
+    private static void printServiceMeters(MeterRegistry registry) {
+        registry.find("ledger.call").timers().forEach(t -> System.out.printf("  ledger.call %-10s n=%-8d mean=%.1fms max=%.1fms%n",
+                t.getId().getTag("outcome"), t.count(), t.mean(TimeUnit.MILLISECONDS), t.max(TimeUnit.MILLISECONDS)));
+        registry.find("transfer.db").timers().forEach(t -> System.out.printf("  transfer.db %-10s n=%-8d mean=%.1fms max=%.1fms%n",
+                t.getId().getTag("step"), t.count(), t.mean(TimeUnit.MILLISECONDS), t.max(TimeUnit.MILLISECONDS)));
+        registry.find("transfer.replays").counters().forEach(c -> System.out.printf("  transfer.replays %-10s %.0f%n",
+                c.getId().getTag("source"), c.count()));
+        registry.find("ledger.limiter.rejected").counters().forEach(c -> System.out.printf("  ledger.limiter.rejected %-10s %.0f%n",
+                c.getId().getTag("reason"), c.count()));
+        registry.find("ledger.limiter.limit").gauges().forEach(g -> System.out.printf("  ledger.limiter.limit (end) %.1f%n", g.value()));
+    }
+
+    /** Spring joins repeated command-line properties with commas, so only add ours when absent. */
+    private static void addDefault(List<String> appArgs, String property, String value) {
+        if (appArgs.stream().noneMatch(a -> a.startsWith("--" + property + "="))) {
+            appArgs.add("--" + property + "=" + value);
+        }
+    }
+
+    private static Duration duration(Map<String, String> opts, String key, String fallback) {
+        String value = opts.getOrDefault(key, fallback).trim().toLowerCase();
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+}
@@ -0,0 +1,259 @@
+package com.sun.transfer_service.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Starts the packaged service the ways it can be deployed and reports time to ready
+ * ({@code /actuator/health} answers) and resident memory once ready. Each run is a fresh JVM.
+ *
+ * <pre>
+ *   mvn -Pfast-startup -DskipTests package exec:exec -Dstartup.args="runs=10"
+ * </pre>
+ *
+ * Modes:
+ * <ul>
+ *   <li>{@code jar}: {@code java -jar}, default profile; what the plain Dockerfile runs</li>
+ *   <li>{@code exploded}: unpacked into application.jar plus lib/ (see {@link #extract}),
+ *   {@code fast-startup} profile</li>
+ *   <li>{@code cds}: as {@code exploded}, plus an AppCDS archive from a training run; what
+ *   Dockerfile.fast runs by default</li>
+ *   <li>{@code aot}, {@code aot-cds}: the same with the AOT-generated bean definitions</li>
+ * </ul>
+ * Options (key=value): jar, runs, modes. The AOT modes need a jar built with
+ * {@code -Pfast-startup}. Resident memory is read from /proc, so it is only shown on Linux.
+ */
+public class StartupBenchmark {
+
+    private static final String AOT_MARKER = "__ApplicationContextInitializer.class";
+    private static final String LIB_PREFIX = "BOOT-INF/lib/";
+    private static final String CLASSES_PREFIX = "BOOT-INF/classes/";
+    private static final Duration READY_TIMEOUT = Duration.ofSeconds(90);
+
+    private final Path jar;
+    private final Path workDir;
+    private final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+
+    StartupBenchmark(Path jar, Path workDir) {
+        this.jar = jar;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                opts.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        Path jar = Paths.get(opts.getOrDefault("jar", "target/transfer-service-0.0.1-SNAPSHOT.jar")).toAbsolutePath();
+        int runs = Integer.parseInt(opts.getOrDefault("runs", "5"));
+        List<String> modes = Arrays.asList(opts.getOrDefault("modes", "jar,exploded,cds,aot,aot-cds").split(","));
+
+        Path workDir = jar.getParent().resolve("startup");
+        boolean aotProcessed = extract(jar, workDir.resolve("app"));
+        StartupBenchmark bench = new StartupBenchmark(jar, workDir);
+
+        System.out.printf("%s, %d runs per mode, %s%n", jar.getFileName(), runs, System.getProperty("java.version"));
+        System.out.printf("%-9s %12s %12s %12s%n", "mode", "ready p50", "ready min", "RSS p50");
+        for (String mode : modes) {
+            if (mode.startsWith("aot") && !aotProcessed) {
+                System.out.printf("%-9s skipped: jar was not built with -Pfast-startup%n", mode);
+                continue;
+            }
+            if (mode.endsWith("cds")) {
+                bench.train(mode);
+            }
+            List<long[]> samples = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                samples.add(bench.start(mode));
+            }
+            samples.sort(Comparator.comparingLong(s -> s[0]));
+            long[] rss = samples.stream().mapToLong(s -> s[1]).sorted().toArray();
+            System.out.printf("%-9s %10d ms %10d ms %s%n", mode,
+                    samples.get(samples.size() / 2)[0], samples.get(0)[0],
+                    rss[rss.length / 2] < 0 ? "         n/a" : String.format("%9d MB", rss[rss.length / 2] / 1024));
+        }
+    }
+
+    /** Dumps the classes loaded up to context refresh into the mode's archive */
+    private void train(String mode) throws Exception {
+        Path archive = archive(mode);
+        Files.deleteIfExists(archive);
+        List<String> command = command(mode.equals("cds") ? "exploded" : "aot", 0);
+        command.add(1, "-XX:ArchiveClassesAtExit=" + archive);
+        command.add(2, "-Dspring.context.exit=onRefresh");
+        Path log = workDir.resolve(mode + "-train.log");
+        Process process = new ProcessBuilder(command)
+                .directory(workDir.resolve("app").toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (!process.waitFor(READY_TIMEOUT.toSeconds(), TimeUnit.SECONDS) || !Files.exists(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("CDS training run failed; see " + log);
+        }
+    }
+
+    private Path archive(String mode) {
+        return workDir.resolve(mode + ".jsa");
+    }
+
+    /** {time to ready in ms, resident set in kB or -1} */
+    private long[] start(String mode) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(command(mode, port))
+                .directory(workDir.resolve("app").toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve(mode + ".log").toFile())
+                .start();
+        try {
+            HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                    .timeout(Duration.ofSeconds(1))
+                    .build();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode + " exited early; see " + workDir.resolve(mode + ".log"));
+                }
+                if (System.nanoTime() - startNanos > READY_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException(mode + " not ready after " + READY_TIMEOUT);
+                }
+                try {
+                    // DOWN (503) still means the server is up; the ledger is not reachable here
+                    http.send(health, HttpResponse.BodyHandlers.discarding());
+                    break;
+                } catch (IOException notYet) {
+                    Thread.sleep(5);
+                }
+            }
+            long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            return new long[]{readyMillis, residentKb(process.pid())};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private List<String> command(String mode, int port) {
+        List<String> command = new ArrayList<>(List.of(java));
+        switch (mode) {
+            case "jar" -> command.addAll(List.of("-jar", jar.toString()));
+            case "exploded", "cds", "aot", "aot-cds" -> {
+                if (mode.startsWith("aot")) {
+                    command.add("-Dspring.aot.enabled=true");
+                }
+                if (mode.endsWith("cds")) {
+                    command.add("-XX:SharedArchiveFile=" + archive(mode));
+                }
+                command.addAll(List.of("-jar", "application.jar", "--spring.profiles.active=fast-startup"));
+            }
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        command.add("--server.port=" + port);
+        return command;
+    }
+
+    /**
+     * Lays the jar out the way Dockerfile.fast does: libraries under lib/ and the application
+     * classes in application.jar, whose manifest lists the libraries in classpath.idx order.
+     * AppCDS only archives classes loaded from jar files on a plain class path, never from a
+     * nested jar or a directory. Returns whether the jar holds AOT-generated initializers.
+     */
+    private static boolean extract(Path jar, Path target) throws IOException {
+        if (Files.exists(target)) {
+            try (Stream<Path> old = Files.walk(target)) {
+                for (Path path : old.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(target.resolve("lib"));
+        boolean aotProcessed = false;
+        try (JarFile fat = new JarFile(jar.toFile())) {
+            List<String> libs = new ArrayList<>();
+            try (InputStream index = fat.getInputStream(fat.getEntry("BOOT-INF/classpath.idx"))) {
+                for (String line : new String(index.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                    // - "BOOT-INF/lib/foo.jar"
+                    if (line.contains(LIB_PREFIX)) {
+                        libs.add("lib/" + line.substring(line.indexOf(LIB_PREFIX) + LIB_PREFIX.length(), line.lastIndexOf('"')));
+                    }
+                }
+            }
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS,
+                    fat.getManifest().getMainAttributes().getValue("Start-Class"));
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, String.join(" ", libs));
+
+            try (JarOutputStream app = new JarOutputStream(
+                    Files.newOutputStream(target.resolve("application.jar")), manifest)) {
+                for (JarEntry entry : fat.stream().toList()) {
+                    String name = entry.getName();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    if (name.startsWith(LIB_PREFIX)) {
+                        try (InputStream in = fat.getInputStream(entry)) {
+                            Files.copy(in, target.resolve("lib").resolve(name.substring(LIB_PREFIX.length())));
+                        }
+                    } else if (name.startsWith(CLASSES_PREFIX)) {
+                        app.putNextEntry(new JarEntry(name.substring(CLASSES_PREFIX.length())));
+                        try (InputStream in = fat.getInputStream(entry)) {
+                            in.transferTo(app);
+                        }
+                        app.closeEntry();
+                        aotProcessed |= name.endsWith(AOT_MARKER);
+                    }
+                }
+            }
+        }
+        return aotProcessed;
+    }
+
+    private static long residentKb(long pid) {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D+", ""));
+                }
+            }
+        } catch (IOException ignored) {
+            // the process may already be gone
+        }
+        return -1;
+    }
+}
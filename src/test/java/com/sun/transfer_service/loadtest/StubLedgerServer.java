@@ -0,0 +1,142 @@
+package com.sun.transfer_service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded stand-in for the Ledger Service. Serves {@code POST /ledger/transfer} and
+ * {@code POST /ledger/transfer/bulk} with a log-normal latency distribution, a share
+ * of HTTP 500s and a share of calls that hang long enough to hit the client timeout.
+ */
+public class StubLedgerServer implements AutoCloseable {
+
+    /**
+     * @param medianLatency typical ledger latency
+     * @param p99Latency    99th percentile; together with the median this fixes the log-normal spread
+     * @param errorRate     share of calls answered with HTTP 500
+     * @param timeoutRate   share of calls that sleep for {@code hangFor} before answering
+     */
+    public record Behaviour(Duration medianLatency, Duration p99Latency,
+                            double errorRate, double timeoutRate, Duration hangFor) {
+
+        public static Behaviour healthy() {
+            return new Behaviour(Duration.ofMillis(20), Duration.ofMillis(120), 0.0, 0.0, Duration.ofSeconds(10));
+        }
+    }
+
+    private static final double Z_99 = 2.326;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder hangs = new LongAdder();
+    private volatile Behaviour behaviour;
+
+    public StubLedgerServer(Behaviour behaviour) throws IOException {
+        this.behaviour = behaviour;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.workers = Executors.newCachedThreadPool();
+        server.setExecutor(workers);
+        server.createContext("/ledger/transfer/bulk", exchange -> handle(exchange, true));
+        server.createContext("/ledger/transfer", exchange -> handle(exchange, false));
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /** Swap behaviour mid-run, e.g. to inject an outage and watch the circuit breaker */
+    public void setBehaviour(Behaviour behaviour) {
+        this.behaviour = behaviour;
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long hangs() {
+        return hangs.sum();
+    }
+
+    private void handle(HttpExchange exchange, boolean bulk) throws IOException {
+        try (exchange) {
+            calls.increment();
+            Behaviour b = behaviour;
+            JsonNode body = mapper.readTree(exchange.getRequestBody());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            if (random.nextDouble() < b.timeoutRate()) {
+                hangs.increment();
+                sleep(b.hangFor());
+            } else {
+                sleep(sampleLatency(b, random));
+            }
+            if (random.nextDouble() < b.errorRate()) {
+                errors.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            JsonNode result;
+            if (bulk) {
+                ArrayNode results = mapper.createArrayNode();
+                body.forEach(item -> results.add(success(item)));
+                result = results;
+            } else {
+                result = success(body);
+            }
+            byte[] bytes = mapper.writeValueAsBytes(result);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private ObjectNode success(JsonNode item) {
+        return mapper.createObjectNode()
+                .put("transferId", item.path("transferId").asText())
+                .put("status", "SUCCESS")
+                .put("message", "Transfer completed");
+    }
+
+    private static Duration sampleLatency(Behaviour b, ThreadLocalRandom random) {
+        double median = Math.max(1, b.medianLatency().toMillis());
+        double p99 = Math.max(median, b.p99Latency().toMillis());
+        double sigma = Math.log(p99 / median) / Z_99;
+        double millis = median * Math.exp(sigma * random.nextGaussian());
+        return Duration.ofNanos((long) (millis * 1_000_000));
+    }
+
+    private static void sleep(Duration d) {
+        try {
+            Thread.sleep(d.toMillis(), (int) (d.toNanosPart() % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+}
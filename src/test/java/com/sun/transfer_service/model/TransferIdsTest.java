@@ -0,0 +1,47 @@
+package com.sun.transfer_service.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferIdsTest {
+
+    @Test
+    void newId_isVersion7_andEmbedsTheTimestamp() {
+        // Arrange
+        long now = 1_718_000_000_000L;
+
+        // Act
+        UUID id = TransferIds.newId(now);
+
+        // Assert
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(now, id.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    void newId_laterMillisecondSortsAfter() {
+        // Act
+        String earlier = TransferIds.newId(1_000L).toString();
+        String later = TransferIds.newId(1_001L).toString();
+
+        // Assert: the text form orders the same way as the index does
+        assertTrue(earlier.compareTo(later) < 0);
+        assertTrue(TransferIds.isWellFormed(TransferIds.newId()));
+        assertFalse(TransferIds.isWellFormed("1-1-1-1-1"));
+    }
+
+    @Test
+    void normalize_lowercasesWellFormedIds_only() {
+        // Arrange
+        String id = TransferIds.newId();
+
+        // Act + Assert
+        assertEquals(id, TransferIds.normalize(id.toUpperCase()));
+        assertEquals(id, TransferIds.normalize(id));
+        assertEquals("Not-An-Id", TransferIds.normalize("Not-An-Id"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.sun.transfer_service.repository;
+
+import com.sun.transfer_service.model.TransferIds;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionRangesTest {
+
+    @Test
+    void names_roundTrip_andForeignTablesAreIgnored() {
+        // Arrange
+        LocalDate day = LocalDate.of(2026, 2, 28);
+        YearMonth month = YearMonth.of(2026, 2);
+
+        // Act
+        String dayTable = PartitionRanges.idempotencyPartition(day);
+        String monthTable = PartitionRanges.transferPartition(month);
+
+        // Assert
+        assertEquals("idempotency_keys_p20260228", dayTable);
+        assertEquals("transfers_p202602", monthTable);
+        assertEquals(Optional.of(day), PartitionRanges.idempotencyDay(dayTable));
+        assertEquals(Optional.of(month), PartitionRanges.transferMonth(monthTable));
+        assertTrue(PartitionRanges.idempotencyDay("idempotency_keys_p2026022").isEmpty());
+        assertTrue(PartitionRanges.idempotencyDay("idempotency_keys_default").isEmpty());
+        assertTrue(PartitionRanges.transferMonth("transfers_p202613").isEmpty());
+        assertTrue(PartitionRanges.transferMonth(dayTable).isEmpty());
+    }
+
+    @Test
+    void transferIdBounds_containEveryIdOfTheMonth() {
+        // Arrange
+        UUID id = UUID.fromString(TransferIds.newId());
+        YearMonth month = YearMonth.from(Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16).atZone(ZoneOffset.UTC));
+
+        // Act
+        UUID lower = PartitionRanges.transferIdLowerBound(month);
+        UUID upper = PartitionRanges.transferIdLowerBound(month.plusMonths(1));
+
+        // Assert: the same byte-wise order PostgreSQL uses for uuid
+        assertTrue(lower.compareTo(id) <= 0);
+        assertTrue(id.compareTo(upper) < 0);
+        assertEquals("create table if not exists transfers_p" + month.toString().replace("-", "")
+                        + " partition of transfers for values from ('" + lower + "') to ('" + upper + "')",
+                PartitionRanges.createTransferPartitionSql(month));
+        assertEquals("create table if not exists idempotency_keys_p20261231 partition of idempotency_keys "
+                        + "for values from ('2026-12-31') to ('2027-01-01')",
+                PartitionRanges.createIdempotencyPartitionSql(LocalDate.of(2026, 12, 31)));
+    }
+}
@@ -0,0 +1,165 @@
+package com.sun.transfer_service.repository;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.model.IdempotencyKey;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.model.TransferIds;
+import com.sun.transfer_service.repository.PartitionManager.TransferPartition;
+import com.sun.transfer_service.service.IdempotencyCleanupJob;
+import com.sun.transfer_service.service.IdempotencyKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the "partitioned" profile against an embedded PostgreSQL: the schema script, the
+ * partition DDL and the JPA mappings on top of it, none of which H2 can check. Each test rolls
+ * back, DDL included.
+ */
+@DataJpaTest
+@ActiveProfiles("partitioned")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PostgresPartitionManagerTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private IdempotencyKeyRepository keyRepository;
+    @Autowired private EntityManager em;
+
+    private TransferProperties properties;
+    private PostgresPartitionManager partitionManager;
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.driverClassName", () -> "org.postgresql.Driver");
+        registry.add("spring.datasource.username", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new TransferProperties();
+        partitionManager = new PostgresPartitionManager(jdbcTemplate, properties);
+    }
+
+    @Test
+    void createUpcoming_createsEachRange_andInsertsLandInTheirPartition() {
+        // Arrange
+        LocalDate today = jdbcTemplate.queryForObject("select current_date", LocalDate.class);
+        partitionManager.createUpcoming(today);
+
+        // Act: through the JPA mappings, as the service writes them
+        Transfer transfer = transferRepository.save(Transfer.builder()
+                .fromAccountId(1L)
+                .toAccountId(2L)
+                .amount(new BigDecimal("5.00"))
+                .transferId(TransferIds.newId())
+                .status(Transfer.STATUS_PENDING)
+                .build());
+        String key = IdempotencyKeys.ofClientKey("partitioned");
+        keyRepository.save(IdempotencyKey.builder().key(key).transfer(transfer).build());
+        em.flush();
+        em.clear();
+
+        // Assert: a range per day and month, each row routed to the current one, and read back by id
+        List<String> days = children(PartitionRanges.IDEMPOTENCY_TABLE);
+        assertEquals(properties.getPartitioning().getIdempotencyDaysAhead() + 2, days.size());
+        assertTrue(days.contains(PartitionRanges.idempotencyPartition(today)));
+        assertEquals(PartitionRanges.transferPartition(YearMonth.now(ZoneOffset.UTC)),
+                jdbcTemplate.queryForObject("select tableoid::regclass::text from transfers", String.class));
+        assertEquals(PartitionRanges.idempotencyPartition(today),
+                jdbcTemplate.queryForObject("select tableoid::regclass::text from idempotency_keys", String.class));
+        assertEquals(transfer.getTransferId(), keyRepository.findAllWithTransfer(List.of(key)).get(0)
+                .getTransfer().getTransferId());
+        assertTrue(transferRepository.findViewByTransferId(transfer.getTransferId()).isPresent());
+    }
+
+    @Test
+    void createUpcoming_isRepeatable() {
+        // Arrange
+        LocalDate day = LocalDate.of(2025, 1, 15);
+        partitionManager.createUpcoming(day);
+        List<String> first = children(PartitionRanges.TRANSFERS_TABLE);
+
+        // Act
+        partitionManager.createUpcoming(day);
+
+        // Assert
+        assertEquals(first, children(PartitionRanges.TRANSFERS_TABLE));
+    }
+
+    @Test
+    void dropTransferPartition_dropsOnlyTheGivenMonth() {
+        // Arrange: January to March 2025
+        partitionManager.createUpcoming(LocalDate.of(2025, 1, 15));
+
+        // Act
+        List<TransferPartition> old = partitionManager.transferPartitionsBefore(YearMonth.of(2025, 3));
+        partitionManager.dropTransferPartition(old.get(0));
+
+        // Assert
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)),
+                old.stream().map(TransferPartition::month).toList());
+        assertEquals(List.of("transfers_p202502", "transfers_p202503"), children(PartitionRanges.TRANSFERS_TABLE));
+        assertThrows(IllegalArgumentException.class, () -> partitionManager.dropTransferPartition(
+                new TransferPartition(PartitionRanges.IDEMPOTENCY_TABLE, YearMonth.of(2025, 1))));
+    }
+
+    @Test
+    void cleanupJob_dropsExpiredDays_withTheirKeys_andKeepsRecentOnes() {
+        // Arrange: ten-day-old partitions holding a key, and the current ones
+        LocalDate today = jdbcTemplate.queryForObject("select current_date", LocalDate.class);
+        partitionManager.createUpcoming(today.minusDays(10));
+        partitionManager.createUpcoming(today);
+        jdbcTemplate.update("insert into idempotency_keys (\"key\", created_day, created_at, transfer_id) "
+                + "values (decode('00', 'hex'), ?, now(), 1)", today.minusDays(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdempotencyCleanupJob job = new IdempotencyCleanupJob(keyRepository, Optional.of(partitionManager),
+                properties, registry);
+
+        // Act
+        job.cleanup();
+
+        // Assert: the old days are gone whole; yesterday onwards is kept
+        List<String> days = children(PartitionRanges.IDEMPOTENCY_TABLE);
+        assertEquals(5.0, registry.get("idempotency.cleanup.partitions.dropped").counter().count());
+        assertFalse(days.contains(PartitionRanges.idempotencyPartition(today.minusDays(10))));
+        assertTrue(days.contains(PartitionRanges.idempotencyPartition(today.minusDays(1))));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from idempotency_keys", Integer.class));
+    }
+
+    private List<String> children(String parent) {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i "
+                + "join pg_class c on c.oid = i.inhrelid "
+                + "join pg_class p on p.oid = i.inhparent "
+                + "where p.relname = ? order by c.relname", String.class, parent);
+    }
+}
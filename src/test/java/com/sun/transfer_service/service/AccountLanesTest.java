@@ -0,0 +1,91 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.service.AccountLanes.Turn;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountLanesTest {
+
+    private TransferProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TransferProperties();
+        properties.getLanes().setMaxQueued(2);
+        properties.getLanes().setMaxWait(Duration.ofSeconds(5));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void sameAccount_waitsInArrivalOrder_otherAccountsGoStraightThrough() {
+        // Arrange
+        AccountLanes lanes = new AccountLanes(properties, registry);
+        Turn first = lanes.acquire(7L).block();
+        List<String> served = new ArrayList<>();
+
+        // Act
+        lanes.acquire(7L).subscribe(t -> served.add("second"), ex -> served.add("timed-out"));
+        lanes.acquire(7L).subscribe(t -> served.add("third"), ex -> served.add("timed-out"));
+        Turn other = lanes.acquire(8L).block(Duration.ofMillis(100));
+
+        // Assert
+        assertNotNull(other);
+        assertEquals(List.of(), served);
+        assertEquals(2.0, registry.get("transfer.lanes.waiting").gauge().value());
+        first.release();
+        first.release();
+        assertEquals(List.of("second"), served);
+        assertEquals(1.0, registry.get("transfer.lanes.waiting").gauge().value());
+        assertEquals(1024, lanes.stripes());
+    }
+
+    @Test
+    void fullLane_rejects_andTimedOutWaitersGiveUpTheirPlace() {
+        // Arrange
+        properties.getLanes().setMaxWait(Duration.ofMillis(50));
+        AccountLanes lanes = new AccountLanes(properties, registry);
+        Turn held = lanes.acquire(7L).block();
+        List<String> served = new ArrayList<>();
+        lanes.acquire(7L).subscribe(t -> served.add("gave-up"), ex -> served.add("timed-out"));
+        lanes.acquire(7L).subscribe(t -> served.add("queued"), ex -> served.add("timed-out"));
+
+        // Act
+        Mono<Turn> overflow = lanes.acquire(7L);
+
+        // Assert
+        assertThrows(LedgerOverloadedException.class, overflow::block);
+        Mono.delay(Duration.ofMillis(200)).block();
+        assertEquals(List.of("timed-out", "timed-out"), served);
+        assertEquals(0.0, registry.get("transfer.lanes.waiting").gauge().value());
+        held.release();
+        assertNotNull(lanes.acquire(7L).block(Duration.ofMillis(100)));
+        assertEquals(3.0, registry.get("transfer.lanes.rejected").counter().count());
+    }
+
+    @Test
+    void maxGroup_letsThatManyThroughTogether() {
+        // Arrange
+        properties.getLanes().setMaxGroup(2);
+        AccountLanes lanes = new AccountLanes(properties, registry);
+
+        // Act
+        Turn first = lanes.acquire(7L).block(Duration.ofMillis(100));
+        Turn second = lanes.acquire(7L).block(Duration.ofMillis(100));
+        Mono<Turn> third = lanes.acquire(7L).timeout(Duration.ofMillis(50), Mono.empty());
+
+        // Assert
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(third.block());
+    }
+}
@@ -0,0 +1,166 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.service.AdaptiveConcurrencyLimiter.Permit;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final TransferResponse OK = TransferResponse.builder().status("SUCCESS").build();
+    private static final TransferResponse FALLBACK = TransferResponse.builder()
+            .status("FAILURE").message(LedgerClient.FALLBACK_MESSAGE).build();
+
+    private LedgerProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LedgerProperties();
+        properties.getLimiter().setInitialLimit(4);
+        properties.getLimiter().setMinLimit(2);
+        properties.getLimiter().setMaxLimit(10);
+        properties.getLimiter().setLatencyThreshold(Duration.ofMillis(100));
+        properties.getLimiter().setBackoffRatio(0.5);
+        properties.getLimiter().setBulkShare(1.0);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void tryAcquire_rejectsOnceLimitIsInUse_andAgainWhenBulkheadIsFull() {
+        // Arrange: bulkhead ceiling (3) below the adaptive limit (4)
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(3).maxWaitDuration(Duration.ZERO).build());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties, bulkheads, registry);
+
+        // Act
+        List<Permit> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(limiter.tryAcquire().orElseThrow());
+        }
+        Optional<Permit> overBulkhead = limiter.tryAcquire();
+        held.get(0).release();
+        Optional<Permit> afterRelease = limiter.tryAcquire();
+
+        // Assert
+        assertTrue(overBulkhead.isEmpty());
+        assertTrue(afterRelease.isPresent());
+        assertEquals(1.0, registry.get("ledger.limiter.rejected").tag("reason", "bulkhead").counter().count());
+    }
+
+    @Test
+    void limit_growsOnFastCallsUnderLoad_andHalvesOnSlowOrFallback() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(properties, BulkheadRegistry.ofDefaults(), registry);
+        long fast = Duration.ofMillis(10).toNanos();
+        long slow = Duration.ofMillis(300).toNanos();
+
+        // Act + Assert: a lone fast call does not use enough of the limit to grow it
+        limiter.tryAcquire().orElseThrow().onLedgerResult(fast, OK);
+        assertEquals(4.0, limiter.getLimit());
+
+        // busy and fast -> +1 for each call that started with at least half the limit in use
+        List<Permit> busy = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            busy.add(limiter.tryAcquire().orElseThrow());
+        }
+        busy.forEach(p -> p.onLedgerResult(fast, OK));
+        assertEquals(7.0, limiter.getLimit());
+
+        // slow -> x0.5, fallback -> x0.5 but never below min
+        limiter.tryAcquire().orElseThrow().onLedgerResult(slow, OK);
+        assertEquals(3.5, limiter.getLimit());
+        limiter.tryAcquire().orElseThrow().onLedgerResult(fast, FALLBACK);
+        assertEquals(2.0, limiter.getLimit());
+        assertEquals(2.0, registry.get("ledger.limiter.limit").gauge().value());
+    }
+
+    @Test
+    void acquire_waitsForARelease_inArrivalOrder_andTimedOutWaitersGiveUpTheirPlace() {
+        // Arrange: limit of 4 fully used
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(properties, BulkheadRegistry.ofDefaults(), registry);
+        List<Permit> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            held.add(limiter.tryAcquire().orElseThrow());
+        }
+        List<String> served = new ArrayList<>();
+
+        // Act
+        limiter.acquire().timeout(Duration.ofMillis(50), Mono.empty()).subscribe(p -> served.add("gave-up"));
+        limiter.acquire().subscribe(p -> served.add("first"));
+        limiter.acquire().subscribe(p -> served.add("second"));
+        Mono.delay(Duration.ofMillis(200)).block();
+        held.get(0).release();
+
+        // Assert
+        assertEquals(List.of("first"), served);
+        assertEquals(1.0, registry.get("ledger.limiter.waiting").gauge().value());
+        held.get(1).release();
+        assertEquals(List.of("first", "second"), served);
+        assertEquals(0, limiter.availableForBulk());
+    }
+
+    @Test
+    void bulkCallers_onlyGetTheirShare_singleTransfersKeepTheRest() {
+        // Arrange: limit 4, half of it for bulk
+        properties.getLimiter().setBulkShare(0.5);
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(properties, BulkheadRegistry.ofDefaults(), registry);
+
+        // Act
+        Permit bulk1 = limiter.acquire().block(Duration.ofSeconds(1));
+        Permit bulk2 = limiter.acquire().block(Duration.ofSeconds(1));
+        Optional<Permit> bulk3 = limiter.acquire().map(Optional::of)
+                .timeout(Duration.ofMillis(50), Mono.just(Optional.empty())).block();
+        Optional<Permit> single = limiter.tryAcquire();
+
+        // Assert
+        assertNotNull(bulk1);
+        assertNotNull(bulk2);
+        assertTrue(bulk3.isEmpty());
+        assertTrue(single.isPresent());
+        assertEquals(0, limiter.availableForBulk());
+    }
+
+    @Test
+    void disabled_onlyTheBulkheadCaps_andTheLimitStaysPut() {
+        // Arrange: bulkhead ceiling (6) above the adaptive limit (4), which is ignored
+        properties.getLimiter().setEnabled(false);
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(6).maxWaitDuration(Duration.ZERO).build());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties, bulkheads, registry);
+        List<Permit> held = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            held.add(limiter.tryAcquire().orElseThrow());
+        }
+        List<Permit> served = new ArrayList<>();
+
+        // Act
+        Optional<Permit> overBulkhead = limiter.tryAcquire();
+        limiter.acquire().subscribe(served::add);
+        int waitingBulk = served.size();
+        held.get(0).onLedgerResult(Duration.ofSeconds(1).toNanos(), FALLBACK);
+
+        // Assert
+        assertTrue(overBulkhead.isEmpty());
+        assertEquals(0, waitingBulk);
+        assertEquals(1, served.size());
+        assertEquals(0, limiter.availableForBulk());
+        assertEquals(4.0, limiter.getLimit());
+    }
+}
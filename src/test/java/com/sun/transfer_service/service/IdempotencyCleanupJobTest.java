@@ -0,0 +1,106 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.model.IdempotencyKey;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.model.TransferIds;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.PartitionManager;
+import com.sun.transfer_service.repository.TransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the chunked expiry against H2 so the key-only select and bulk delete
+ * queries are exercised for real.
+ */
+@DataJpaTest
+class IdempotencyCleanupJobTest {
+
+    @Autowired private IdempotencyKeyRepository keyRepository;
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private EntityManager em;
+
+    @Test
+    void cleanup_deletesOnlyExpiredKeys_inChunks() {
+        // Arrange: 5 expired keys and 2 fresh ones
+        for (int i = 0; i < 7; i++) {
+            saveKey(IdempotencyKeys.ofClientKey("key-" + i));
+        }
+        em.flush();
+        em.createQuery("update IdempotencyKey k set k.createdAt = :old where k.key in :keys")
+                .setParameter("old", LocalDateTime.now().minusHours(30))
+                .setParameter("keys", Stream.of("key-0", "key-1", "key-2", "key-3", "key-4")
+                        .map(IdempotencyKeys::ofClientKey).toList())
+                .executeUpdate();
+        em.clear();
+
+        TransferProperties properties = new TransferProperties();
+        properties.getIdempotency().getCleanup().setChunkSize(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdempotencyCleanupJob job = new IdempotencyCleanupJob(keyRepository, Optional.empty(), properties, registry);
+
+        // Act
+        long removed = job.purgeExpired();
+
+        // Assert
+        assertEquals(5, removed);
+        assertEquals(2, keyRepository.count());
+        assertTrue(keyRepository.existsById(IdempotencyKeys.ofClientKey("key-5")));
+        assertEquals(5.0, registry.get("idempotency.cleanup.purged").counter().count());
+    }
+
+    @Test
+    void cleanup_withPartitions_dropsWholeExpiredDays_andDeletesNoRows() {
+        // Arrange: an expired key whose day is not droppable yet
+        String expired = IdempotencyKeys.ofClientKey("expired");
+        saveKey(expired);
+        em.flush();
+        em.createQuery("update IdempotencyKey k set k.createdAt = :old")
+                .setParameter("old", LocalDateTime.now().minusHours(30))
+                .executeUpdate();
+        em.clear();
+        PartitionManager partitionManager = mock(PartitionManager.class);
+        LocalDate slackDay = LocalDateTime.now().minusHours(24).toLocalDate().minusDays(1);
+        when(partitionManager.dropIdempotencyPartitionsBefore(any()))
+                .thenReturn(List.of("idempotency_keys_p20240101", "idempotency_keys_p20240102"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdempotencyCleanupJob job = new IdempotencyCleanupJob(keyRepository, Optional.of(partitionManager),
+                new TransferProperties(), registry);
+
+        // Act
+        long removed = job.purgeExpired();
+
+        // Assert: only days entirely past the cutoff, with a day of slack; the row is left to
+        // its partition, and reserve treats it as expired meanwhile
+        verify(partitionManager).dropIdempotencyPartitionsBefore(slackDay);
+        assertEquals(2.0, registry.get("idempotency.cleanup.partitions.dropped").counter().count());
+        assertEquals(0, removed);
+        assertTrue(keyRepository.existsById(expired));
+    }
+
+    private void saveKey(String key) {
+        Transfer t = transferRepository.save(Transfer.builder()
+                .fromAccountId(1L)
+                .toAccountId(2L)
+                .amount(new BigDecimal("1.00"))
+                .transferId(TransferIds.newId())
+                .status("SUCCESS")
+                .build());
+        keyRepository.save(IdempotencyKey.builder().key(key).transfer(t).build());
+    }
+}
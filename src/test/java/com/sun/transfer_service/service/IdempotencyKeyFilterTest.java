@@ -0,0 +1,168 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository.KeyCreated;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static com.sun.transfer_service.service.IdempotencyKeys.ofClientKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeyFilterTest {
+
+    private static final Instant T0 = Instant.parse("2024-06-01T09:00:00Z");
+
+    private final IdempotencyKeyRepository keyRepository = mock(IdempotencyKeyRepository.class);
+    private TransferProperties properties;
+    private SimpleMeterRegistry registry;
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TransferProperties();
+        registry = new SimpleMeterRegistry();
+        clock = new MutableClock(T0);
+    }
+
+    @Test
+    void addedKeys_areNeverMissed_andNewKeysHitNoMoreThanTheTargetRate() {
+        // Arrange
+        properties.getIdempotency().getFilter().setExpectedKeys(30_000);
+        properties.getIdempotency().getFilter().setFalsePositiveRate(0.01);
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(properties, keyRepository, registry, clock);
+        filter.rebuild();
+
+        // Act: a full ttl's worth of keys, spread over the windows
+        for (int i = 0; i < 30_000; i++) {
+            filter.add(ofClientKey("seen-" + i));
+            if (i % 10_000 == 9_999) {
+                clock.advance(Duration.ofHours(8));
+            }
+        }
+        clock.advance(Duration.ofHours(-8));
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(ofClientKey("new-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < 30_000; i++) {
+            assertTrue(filter.mightContain(ofClientKey("seen-" + i)), "missed seen-" + i);
+        }
+        assertTrue(falsePositives <= 1_000, "false positives: " + falsePositives);
+        assertEquals(100_000 - falsePositives, registry.get("idempotency.filter.skipped").counter().count());
+    }
+
+    @Test
+    void keys_stayForAtLeastTheTtl_thenAgeOutWithTheirWindow() {
+        // Arrange: 3h ttl over 4 generations is one window per hour
+        properties.getIdempotency().setTtl(Duration.ofHours(3));
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(properties, keyRepository, registry, clock);
+        filter.rebuild();
+        String key = ofClientKey("aging");
+
+        // Act / Assert
+        filter.add(key);
+        clock.advance(Duration.ofHours(3));
+        assertTrue(filter.mightContain(key));
+        clock.advance(Duration.ofHours(1));
+        assertFalse(filter.mightContain(key));
+        filter.add(key);
+        assertTrue(filter.mightContain(key));
+    }
+
+    @Test
+    void rebuild_loadsKeysPageByPage_intoTheirOwnWindows_andUntilThenEveryKeyIsLookedUp() {
+        // Arrange: one key from 2h ago, one from 23h ago
+        LocalDateTime now = LocalDateTime.ofInstant(T0, ZoneOffset.UTC);
+        String recent = ofClientKey("recent");
+        String old = ofClientKey("old");
+        when(keyRepository.findKeysCreatedSince(any(), any(), any(), any()))
+                .thenReturn(List.of(new Key(old, now.minusHours(23)), new Key(recent, now.minusHours(2))));
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(properties, keyRepository, registry, clock);
+
+        // Act
+        boolean beforeRebuild = filter.mightContain(ofClientKey("anything"));
+        filter.rebuild();
+
+        // Assert
+        assertTrue(beforeRebuild);
+        assertTrue(filter.mightContain(recent));
+        assertTrue(filter.mightContain(old));
+        assertFalse(filter.mightContain(ofClientKey("anything")));
+        verify(keyRepository).findKeysCreatedSince(eq(now.minusHours(24)), eq(now.minusHours(24)), eq(""), any());
+        // windows are 8h, 00:00/08:00/16:00 UTC: the old key goes when the 16:00 one starts
+        clock.advance(Duration.ofHours(7));
+        assertFalse(filter.mightContain(old));
+        assertTrue(filter.mightContain(recent));
+    }
+
+    @Test
+    void partitionedKeys_areAlwaysLookedUp() {
+        // Arrange: the primary key is (key, created_day), so only the lookup spans days
+        properties.getPartitioning().setEnabled(true);
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(properties, keyRepository, registry, clock);
+
+        // Act
+        filter.rebuild();
+
+        // Assert
+        assertTrue(filter.mightContain(ofClientKey("never-seen")));
+        verifyNoInteractions(keyRepository);
+    }
+
+    private record Key(String key, LocalDateTime createdAt) implements KeyCreated {
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.dto.TransferRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stored keys must not change between releases, or re-sent requests and batches stop
+ * replaying. If one of the golden values below fails, the encoding changed: that needs a new
+ * version byte and a migration plan, not a new expected value.
+ */
+class IdempotencyKeysTest {
+
+    private static final IdempotencyKeys.ItemKeys PAYROLL = IdempotencyKeys.forBatch("payroll-2024-06");
+
+    @Test
+    void goldenValues_stayStable() {
+        assertEquals("f6fdb32bfd0ba4734609b87192840b8609cea6025ab0f2452c950a1416102760",
+                IdempotencyKeys.ofClientKey("idem-123"));
+        assertEquals("37755edd96be8dcf814b7d1db46b73894bd8bbdde50acbb7832104524198b8b2",
+                PAYROLL.of(new TransferRequest(123456789L, 987654321L, new BigDecimal("2500.75"))));
+        assertEquals("a76b8abccb0b4fddff76ebabcbc3bd32de6ebe36260e2e7ccdb047ad7af67dbb",
+                PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("100"))));
+        assertEquals("b8c4a607b28a166b37161c3c1edd26cfa621710920887a2eef56a1f4c77d51d2",
+                PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("123456789012345678901234567890.01"))));
+        assertEquals("5bbb03ab672271486759bf0f11b4df6ac14756f35604621439de73922ec238b7",
+                IdempotencyKeys.forBatch("lohn-\u00e4\u20ac").of(new TransferRequest(null, 2L, null)));
+    }
+
+    @Test
+    void itemKey_matchesTheDocumentedEncoding() throws Exception {
+        // Arrange: v1 = 0x01, batch key length + UTF-8, from, to, amount scale + kind + unscaled long
+        byte[] batchKey = "payroll-2024-06".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer expected = ByteBuffer.allocate(64)
+                .put((byte) 1).putInt(batchKey.length).put(batchKey)
+                .put((byte) 1).putLong(123456789L)
+                .put((byte) 1).putLong(987654321L)
+                .putInt(2).put((byte) 1).putLong(250075L);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(expected.array(), 0, expected.position());
+
+        // Act
+        String key = PAYROLL.of(new TransferRequest(123456789L, 987654321L, new BigDecimal("2500.75")));
+
+        // Assert
+        assertEquals(HexFormat.of().formatHex(sha256.digest()), key);
+    }
+
+    @Test
+    void itemKey_canonicalAmount_andEveryFieldCounts() {
+        // Act
+        String plain = PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("100")));
+
+        // Assert
+        assertEquals(plain, PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("100.00"))));
+        assertEquals(plain, PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("1E+2"))));
+        assertNotEquals(plain, PAYROLL.of(new TransferRequest(1L, 2L, new BigDecimal("100.01"))));
+        assertNotEquals(plain, PAYROLL.of(new TransferRequest(2L, 1L, new BigDecimal("100"))));
+        assertNotEquals(plain, IdempotencyKeys.forBatch("payroll-2024-07").of(new TransferRequest(1L, 2L, new BigDecimal("100"))));
+        assertNotEquals(PAYROLL.of(new TransferRequest(null, 2L, BigDecimal.ONE)),
+                PAYROLL.of(new TransferRequest(0L, 2L, BigDecimal.ONE)));
+    }
+
+    @Test
+    void itemKey_concurrentCallers_getTheSameKeysAsSequential() throws Exception {
+        // Arrange
+        List<TransferRequest> items = IntStream.range(0, 2_000)
+                .mapToObj(i -> new TransferRequest((long) i, (long) i + 1, BigDecimal.valueOf(i, 2).add(BigDecimal.ONE)))
+                .toList();
+        List<String> sequential = items.stream().map(PAYROLL::of).toList();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        try {
+            // Act
+            List<Future<String>> parallel = items.stream().map(item -> pool.submit(() -> PAYROLL.of(item))).toList();
+
+            // Assert
+            for (int i = 0; i < items.size(); i++) {
+                assertEquals(sequential.get(i), parallel.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.repository.PartitionManager;
+import com.sun.transfer_service.repository.PartitionManager.TransferPartition;
+import com.sun.transfer_service.repository.TransferArchiver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PartitionMaintenanceJobTest {
+
+    @Mock private PartitionManager partitionManager;
+    @Mock private TransferArchiver archiver;
+
+    private TransferProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new TransferProperties();
+        properties.getPartitioning().setTransferRetentionMonths(12);
+    }
+
+    @Test
+    void retire_archivesThenDrops_andStopsAtFirstArchiveFailure() throws Exception {
+        // Arrange: three expired months, the second one fails to archive
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(12);
+        TransferPartition jan = new TransferPartition("transfers_p202401", YearMonth.of(2024, 1));
+        TransferPartition feb = new TransferPartition("transfers_p202402", YearMonth.of(2024, 2));
+        TransferPartition mar = new TransferPartition("transfers_p202403", YearMonth.of(2024, 3));
+        when(partitionManager.transferPartitionsBefore(oldestKept)).thenReturn(List.of(jan, feb, mar));
+        doThrow(new IllegalStateException("bucket unavailable")).when(archiver).archive(feb.table(), feb.month());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PartitionMaintenanceJob job = new PartitionMaintenanceJob(partitionManager, Optional.of(archiver), properties, registry);
+
+        // Act
+        int retired = job.retireTransferPartitions();
+
+        // Assert
+        assertEquals(1, retired);
+        verify(partitionManager).dropTransferPartition(jan);
+        verify(partitionManager, never()).dropTransferPartition(feb);
+        verify(archiver, never()).archive(mar.table(), mar.month());
+        assertEquals(1.0, registry.get("transfer.partitions.archived").counter().count());
+    }
+
+    @Test
+    void retire_withoutArchiver_keepsEverything() {
+        // Arrange
+        PartitionMaintenanceJob job = new PartitionMaintenanceJob(partitionManager, Optional.empty(), properties,
+                new SimpleMeterRegistry());
+
+        // Act
+        int retired = job.retireTransferPartitions();
+
+        // Assert
+        assertEquals(0, retired);
+        verify(partitionManager, never()).transferPartitionsBefore(any());
+        verify(partitionManager, never()).dropTransferPartition(any());
+    }
+}
@@ -0,0 +1,92 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferEventsTest {
+
+    private TransferProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TransferProperties();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void watch_emitsCurrentState_thenThePushedOutcome_andEndsOnceAllAreFinal() {
+        // Arrange
+        TransferEvents events = new TransferEvents(properties, registry);
+        List<String> seen = new ArrayList<>();
+        List<String> ended = new ArrayList<>();
+
+        // Act
+        events.watch(Set.of("t-1"), id -> Mono.just(response(id, "PENDING")))
+                .subscribe(r -> seen.add(r.getTransferId() + ":" + r.getStatus()), ex -> { }, () -> ended.add("done"));
+        events.publish("t-2", response("t-2", "SUCCESS"));
+        events.publish("t-1", response("t-1", "FAILURE"));
+
+        // Assert
+        assertEquals(List.of("t-1:PENDING", "t-1:FAILURE"), seen);
+        assertEquals(List.of("done"), ended);
+        assertEquals(0.0, registry.get("transfer.events.subscribers").gauge().value());
+        assertEquals(0, events.watchedTransfers());
+    }
+
+    @Test
+    void watch_alreadyFinal_isEmittedOnce_evenWhenTheOutcomeIsAlsoPublished() {
+        // Arrange: the outcome lands between registration and the state lookup
+        TransferEvents events = new TransferEvents(properties, registry);
+        List<String> seen = new ArrayList<>();
+
+        // Act
+        events.watch(Set.of("t-1", "t-2"), id -> {
+                    events.publish(id, response(id, "SUCCESS"));
+                    return Mono.just(response(id, "SUCCESS"));
+                })
+                .subscribe(r -> seen.add(r.getTransferId()));
+
+        // Assert
+        assertEquals(2, seen.size());
+        assertTrue(seen.containsAll(List.of("t-1", "t-2")));
+        assertEquals(0, events.watchedTransfers());
+    }
+
+    @Test
+    void watch_overSubscriberLimit_isRejected_andMaxWaitEndsTheSubscription() {
+        // Arrange
+        properties.getEvents().setMaxSubscribers(1);
+        properties.getEvents().setMaxWait(Duration.ofMillis(100));
+        TransferEvents events = new TransferEvents(properties, registry);
+        Disposable first = events.watch(Set.of("t-1"), id -> Mono.just(response(id, "PENDING"))).subscribe();
+
+        // Act
+        ResponseStatusException rejected = assertThrows(ResponseStatusException.class,
+                () -> events.watch(Set.of("t-2"), id -> Mono.empty()).blockLast());
+        Mono.delay(Duration.ofMillis(300)).block();
+
+        // Assert
+        assertEquals(503, rejected.getStatusCode().value());
+        assertEquals(1.0, registry.get("transfer.events.rejected").counter().count());
+        assertTrue(first.isDisposed());
+        assertEquals(0.0, registry.get("transfer.events.subscribers").gauge().value());
+    }
+
+    private static TransferResponse response(String transferId, String status) {
+        return TransferResponse.builder().transferId(transferId).status(status).build();
+    }
+}
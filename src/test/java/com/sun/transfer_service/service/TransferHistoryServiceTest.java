@@ -0,0 +1,126 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferHistoryEntry;
+import com.sun.transfer_service.dto.TransferHistoryPage;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.model.TransferIds;
+import com.sun.transfer_service.repository.TransferRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset paging against H2 with Hibernate statistics on, so every page is checked to cost the
+ * same two projection queries and no entity loads.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TransferHistoryServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 6, 1, 9, 0);
+
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory emf;
+
+    private TransferHistoryService history;
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        history = new TransferHistoryService(transferRepository, new TransferProperties());
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void pages_coverSentAndReceived_newestFirst_atTheSameCostPerPage() {
+        // Arrange: account 7 sends, receives, pays itself once; two rows share a timestamp
+        List<String> expected = new ArrayList<>();
+        expected.add(0, transfer(7L, 8L, T0.plusMinutes(1)));
+        expected.add(0, transfer(9L, 7L, T0.plusMinutes(2)));
+        expected.add(0, transfer(7L, 7L, T0.plusMinutes(3)));
+        expected.add(0, transfer(7L, 9L, T0.plusMinutes(4)));
+        expected.add(0, transfer(8L, 7L, T0.plusMinutes(4)));
+        expected.add(0, transfer(7L, 8L, T0.plusMinutes(5)));
+        transfer(8L, 9L, T0.plusMinutes(3));
+        em.flush();
+        em.clear();
+
+        // Act: pages of two
+        List<String> seen = new ArrayList<>();
+        List<Long> statementsPerPage = new ArrayList<>();
+        String cursor = null;
+        do {
+            stats.clear();
+            TransferHistoryPage page = history.getHistory(7L, null, null, cursor, 2);
+            statementsPerPage.add(stats.getPrepareStatementCount());
+            assertEquals(0, stats.getEntityLoadCount());
+            page.getItems().forEach(item -> seen.add(item.getTransferId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Assert: rows with the same createdAt are ordered by id, so both orders are valid
+        assertEquals(expected.size(), seen.size());
+        assertEquals(expected.get(0), seen.get(0));
+        assertEquals(List.of(expected.get(1), expected.get(2)).stream().sorted().toList(),
+                seen.subList(1, 3).stream().sorted().toList());
+        assertEquals(expected.subList(3, 6), seen.subList(3, 6));
+        assertEquals(List.of(2L, 2L, 2L), statementsPerPage);
+    }
+
+    @Test
+    void range_isFromInclusiveToExclusive() {
+        // Arrange
+        transfer(7L, 8L, T0);
+        String inside = transfer(7L, 8L, T0.plusMinutes(1));
+        transfer(7L, 8L, T0.plusMinutes(2));
+        em.flush();
+
+        // Act
+        TransferHistoryPage page = history.getHistory(7L, T0.plusMinutes(1), T0.plusMinutes(2), null, null);
+
+        // Assert
+        assertEquals(List.of(inside), page.getItems().stream().map(TransferHistoryEntry::getTransferId).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void badRequests_areRejected() {
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> history.getHistory(7L, null, null, "not-a-cursor", null)).getStatusCode().value());
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> history.getHistory(7L, null, null, null, 1000)).getStatusCode().value());
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> history.getHistory(7L, T0, T0, null, null)).getStatusCode().value());
+    }
+
+    /** createdAt is set by the database on insert, so it is moved afterwards */
+    private String transfer(Long from, Long to, LocalDateTime createdAt) {
+        Transfer transfer = transferRepository.save(Transfer.builder()
+                .transferId(TransferIds.newId())
+                .fromAccountId(from)
+                .toAccountId(to)
+                .amount(BigDecimal.TEN)
+                .status(Transfer.STATUS_SUCCESS)
+                .build());
+        em.flush();
+        em.createQuery("update Transfer t set t.createdAt = :createdAt where t.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("id", transfer.getId())
+                .executeUpdate();
+        return transfer.getTransferId();
+    }
+}
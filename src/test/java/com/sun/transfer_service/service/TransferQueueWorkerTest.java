@@ -0,0 +1,176 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.metrics.TransferMetrics;
+import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.TransferRepository;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the queue claim against H2 so the lease select and conditional update are
+ * exercised for real; the ledger is mocked.
+ */
+@DataJpaTest
+class TransferQueueWorkerTest {
+
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private IdempotencyKeyRepository keyRepository;
+    @Autowired private EntityManager em;
+
+    private final LedgerClient ledgerClient = mock(LedgerClient.class);
+    private final CircuitBreakerRegistry breakers = CircuitBreakerRegistry.ofDefaults();
+    private TransferStore transferStore;
+    private TransferQueueWorker worker;
+    private SimpleMeterRegistry registry;
+    private AccountLanes accountLanes;
+    private TransferProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TransferProperties();
+        properties.getQueue().setConcurrency(2);
+        registry = new SimpleMeterRegistry();
+        transferStore = new TransferStore(transferRepository, keyRepository, properties,
+                new IdempotencyKeyFilter(properties, keyRepository, registry));
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(new LedgerProperties(), BulkheadRegistry.ofDefaults(), registry);
+        accountLanes = new AccountLanes(properties, registry);
+        TransferMetrics metrics = new TransferMetrics(registry);
+        worker = new TransferQueueWorker(transferStore, new TransferEvents(properties, registry), new LedgerCalls(ledgerClient, metrics),
+                accountLanes, limiter, Schedulers.immediate(), properties, metrics, breakers, registry);
+
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                        .transferId(inv.getArgument(0, String.class))
+                        .status("SUCCESS")
+                        .message("Transfer completed")
+                        .build()));
+    }
+
+    @Test
+    void drain_claimsUpToConcurrency_completesQueued_andSkipsInlineTransfers() {
+        // Arrange: three queued transfers and one processed inline (no lease)
+        String first = queue("q-1");
+        queue("q-2");
+        queue("q-3");
+        String inline = transferStore.reserve(new TransferRequest(5L, 6L, BigDecimal.ONE), IdempotencyKeys.ofClientKey("inline")).transferId();
+        em.flush();
+
+        // Act
+        int firstPoll = worker.drain();
+        int secondPoll = worker.drain();
+        int thirdPoll = worker.drain();
+        em.clear();
+
+        // Assert: concurrency caps each poll, every queued row completes once, the inline one is left alone
+        assertEquals(2, firstPoll);
+        assertEquals(1, secondPoll);
+        assertEquals(0, thirdPoll);
+        assertEquals("SUCCESS", transferRepository.findByTransferId(first).orElseThrow().getStatus());
+        assertEquals(Transfer.STATUS_PENDING, transferRepository.findByTransferId(inline).orElseThrow().getStatus());
+        verify(ledgerClient, times(3)).transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+    }
+
+    @Test
+    void drain_doesNothingWhileLedgerCircuitIsOpen() {
+        // Arrange
+        String queued = queue("q-open");
+        em.flush();
+        breakers.circuitBreaker("ledger").transitionToOpenState();
+
+        // Act
+        int claimed = worker.drain();
+        em.clear();
+
+        // Assert
+        assertEquals(0, claimed);
+        assertEquals(Transfer.STATUS_PENDING, transferRepository.findByTransferId(queued).orElseThrow().getStatus());
+        verifyNoInteractions(ledgerClient);
+    }
+
+    @Test
+    void drain_waitsForTheSourceAccountsLaneTurn_beforeCallingTheLedger() {
+        // Arrange: an inline transfer from account 1 holds the lane
+        AccountLanes.Turn held = accountLanes.acquire(1L).block();
+        String queued = queue("q-lane");
+        em.flush();
+
+        // Act
+        int claimed = worker.drain();
+        verifyNoInteractions(ledgerClient);
+        held.release();
+        em.clear();
+
+        // Assert: sent as soon as the turn came round
+        assertEquals(1, claimed);
+        assertEquals("SUCCESS", transferRepository.findByTransferId(queued).orElseThrow().getStatus());
+        verify(ledgerClient).transferToLedgerAsync(eq(queued), eq(1L), eq(2L), any(BigDecimal.class));
+    }
+
+    @Test
+    void drain_recoversInlineTransferOnlyOnceHandedOver() {
+        // Arrange: an inline transfer whose outcome could not be recorded
+        String inline = transferStore.reserve(new TransferRequest(5L, 6L, BigDecimal.ONE), IdempotencyKeys.ofClientKey("lost")).transferId();
+        em.flush();
+        int beforeHandOver = worker.drain();
+
+        // Act
+        transferStore.recoverLater(List.of(inline));
+        int claimed = worker.drain();
+        em.clear();
+
+        // Assert: never claimed on its own, then re-sent under the same transfer id and recorded
+        assertEquals(0, beforeHandOver);
+        assertEquals(1, claimed);
+        assertEquals("SUCCESS", transferRepository.findByTransferId(inline).orElseThrow().getStatus());
+        verify(ledgerClient).transferToLedgerAsync(eq(inline), eq(5L), eq(6L), any(BigDecimal.class));
+        assertEquals(1, registry.get("transfer.queue.recovered").counter().count());
+    }
+
+    @Test
+    void reconcile_recoversInlineTransferLeftPendingPastStaleAfter() {
+        // Arrange: an inline transfer whose instance died before recording an outcome
+        String inline = transferStore.reserve(new TransferRequest(5L, 6L, BigDecimal.ONE), IdempotencyKeys.ofClientKey("orphan")).transferId();
+        em.flush();
+        worker.reconcile();
+        int whileFresh = worker.drain();
+
+        // Act
+        properties.getQueue().setStaleAfter(Duration.ofMillis(-1));
+        worker.reconcile();
+        int claimed = worker.drain();
+        em.clear();
+
+        // Assert: left alone while its call could still be out, then re-sent under its transfer id
+        assertEquals(0, whileFresh);
+        assertEquals(1, claimed);
+        assertEquals("SUCCESS", transferRepository.findByTransferId(inline).orElseThrow().getStatus());
+        verify(ledgerClient).transferToLedgerAsync(eq(inline), eq(5L), eq(6L), any(BigDecimal.class));
+    }
+
+    private String queue(String key) {
+        return transferStore.reserve(new TransferRequest(1L, 2L, new BigDecimal("3.00")), IdempotencyKeys.ofClientKey(key), true).transferId();
+    }
+}
@@ -1,25 +1,44 @@
 package com.sun.transfer_service.service;
 
 import com.sun.transfer_service.client.LedgerClient;
+import com.sun.transfer_service.config.LedgerProperties;
+import com.sun.transfer_service.config.TransferProperties;
 import com.sun.transfer_service.dto.TransferRequest;
 import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.dto.TransferView;
+import com.sun.transfer_service.metrics.TransferMetrics;
 import com.sun.transfer_service.model.IdempotencyKey;
 import com.sun.transfer_service.model.Transfer;
+import com.sun.transfer_service.model.TransferIds;
 import com.sun.transfer_service.repository.IdempotencyKeyRepository;
 import com.sun.transfer_service.repository.TransferRepository;
+import com.sun.transfer_service.service.AdaptiveConcurrencyLimiter.Permit;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
+import static com.sun.transfer_service.service.IdempotencyKeys.ofClientKey;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -39,6 +58,11 @@ class TransferServiceTest {
     @Mock private LedgerClient ledgerClient;
 
     private TransferService transferService;
+    private SimpleMeterRegistry registry;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private IdempotencyKeyFilter keyFilter;
+    private TransferProperties properties;
+    private TransferEvents transferEvents;
 
     /**
      * Simple executor that runs tasks on the calling thread.
@@ -53,42 +77,59 @@ class TransferServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         TaskExecutor direct = new DirectExecutor();
+        properties = new TransferProperties();
+        registry = new SimpleMeterRegistry();
+        TransferMetrics metrics = new TransferMetrics(registry);
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(new LedgerProperties(), BulkheadRegistry.ofDefaults(), registry);
+        // not rebuilt, so every key is looked up unless a test rebuilds it
+        keyFilter = new IdempotencyKeyFilter(properties, idempotencyKeyRepository, registry);
+        transferEvents = new TransferEvents(properties, registry);
         transferService = new TransferService(
                 transferRepository,
-                idempotencyKeyRepository,
-                ledgerClient
+                new TransferStore(transferRepository, idempotencyKeyRepository, properties, keyFilter),
+                new IdempotencyCache(properties, registry),
+                new TransferViewCache(properties, registry),
+                new InFlightTransfers(metrics, registry),
+                transferEvents,
+                new LedgerCalls(ledgerClient, metrics),
+                new AccountLanes(properties, registry),
+                concurrencyLimiter,
+                direct,
+                Schedulers.immediate(),
+                properties,
+                metrics
         );
     }
 
     @Test
-    void createTransfer_success_callsLedger_persists_andReturnsResponse() {
+    void createTransferAsync_success_callsLedger_persists_andReturnsResponse() {
         // Arrange
         TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("100.00"));
         String idemKey = "idem-123";
 
         // No previous idempotency record
-        when(idempotencyKeyRepository.findById(idemKey)).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey))).thenReturn(Optional.empty());
 
         // Ledger responds SUCCESS, echoing back the transferId it received
-        when(ledgerClient.transferToLedger(anyString(), eq(1L), eq(2L), eq(new BigDecimal("100.00"))))
+        when(ledgerClient.transferToLedgerAsync(anyString(), eq(1L), eq(2L), eq(new BigDecimal("100.00"))))
                 .thenAnswer(inv -> {
                     String tid = inv.getArgument(0, String.class);
-                    return TransferResponse.builder()
+                    return Mono.just(TransferResponse.builder()
                             .transferId(tid)
                             .status("SUCCESS")
                             .message("Transfer completed")
-                            .build();
+                            .build());
                 });
 
         // Persist returns the same entity passed in
         when(transferRepository.save(any(Transfer.class)))
                 .thenAnswer(inv -> inv.getArgument(0));
 
-        when(idempotencyKeyRepository.save(any(IdempotencyKey.class)))
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
                 .thenAnswer(inv -> inv.getArgument(0));
 
         // Act
-        TransferResponse resp = transferService.createTransfer(req, idemKey);
+        TransferResponse resp = transferService.createTransferAsync(req, idemKey).block();
 
         // Assert
         assertNotNull(resp);
@@ -96,13 +137,15 @@ class TransferServiceTest {
         assertNotNull(resp.getTransferId());
         assertFalse(resp.getTransferId().isBlank());
         verify(ledgerClient, times(1))
-                .transferToLedger(anyString(), eq(1L), eq(2L), eq(new BigDecimal("100.00")));
+                .transferToLedgerAsync(anyString(), eq(1L), eq(2L), eq(new BigDecimal("100.00")));
         verify(transferRepository, times(1)).save(any(Transfer.class));
-        verify(idempotencyKeyRepository, times(1)).save(any(IdempotencyKey.class));
+        verify(idempotencyKeyRepository, times(1)).saveAndFlush(any(IdempotencyKey.class));
+        // Reserved as PENDING first, then the ledger outcome is applied in a separate step
+        verify(transferRepository).updateOutcome(resp.getTransferId(), "SUCCESS", "Transfer completed");
     }
 
     @Test
-    void createTransfer_idempotentReplay_returnsPreviousResult_andSkipsLedger() {
+    void createTransferAsync_idempotentReplay_returnsPreviousResult_andSkipsLedger() {
         // Arrange
         TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("50.00"));
         String idemKey = "idem-replay";
@@ -117,15 +160,15 @@ class TransferServiceTest {
                 .build();
 
         IdempotencyKey key = IdempotencyKey.builder()
-                .key(idemKey)
+                .key(ofClientKey(idemKey))
                 .transfer(existing)
                 .createdAt(LocalDateTime.now()) // not expired
                 .build();
 
-        when(idempotencyKeyRepository.findById(idemKey)).thenReturn(Optional.of(key));
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey))).thenReturn(Optional.of(key));
 
         // Act
-        TransferResponse resp = transferService.createTransfer(req, idemKey);
+        TransferResponse resp = transferService.createTransferAsync(req, idemKey).block();
 
         // Assert
         assertNotNull(resp);
@@ -137,10 +180,204 @@ class TransferServiceTest {
     }
 
     @Test
-    void getByTransferId_found_returnsEntity() {
+    void createTransferAsync_outcomeNotRecorded_leavesTheTransferForTheQueueWorker() {
+        // Arrange: the ledger answers but recording the outcome fails
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("75.00"));
+        when(idempotencyKeyRepository.findById(ofClientKey("idem-unrecorded"))).thenReturn(Optional.empty());
+        when(ledgerClient.transferToLedgerAsync(anyString(), eq(1L), eq(2L), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                        .transferId(inv.getArgument(0, String.class))
+                        .status("SUCCESS")
+                        .build()));
+        when(transferRepository.save(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(transferRepository.updateOutcome(anyString(), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("connection lost"));
+
+        // Act
+        assertThrows(DataIntegrityViolationException.class,
+                () -> transferService.createTransferAsync(req, "idem-unrecorded").block());
+
+        // Assert: leased only now that the ledger call is over
+        ArgumentCaptor<Transfer> saved = ArgumentCaptor.forClass(Transfer.class);
+        verify(transferRepository).save(saved.capture());
+        assertNull(saved.getValue().getLeaseExpiresAt());
+        verify(transferRepository).leaseForRecovery(eq(List.of(saved.getValue().getTransferId())), any(LocalDateTime.class));
+    }
+
+    @Test
+    void createTransferAsync_ledgerAtCapacity_rejectedBeforeAnythingIsPersisted() {
+        // Arrange: take every permit the limiter has
+        while (concurrencyLimiter.tryAcquire().isPresent()) {
+            // hold them
+        }
+        double rejectedBefore = registry.get("ledger.limiter.rejected").tag("reason", "limit").counter().count();
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("75.00"));
+
+        // Act
+        LedgerOverloadedException ex = assertThrows(LedgerOverloadedException.class,
+                () -> transferService.createTransferAsync(req, "idem-busy").block());
+
+        // Assert
+        assertEquals(503, ex.getStatusCode().value());
+        assertEquals("1", ex.getHeaders().getFirst("Retry-After"));
+        verifyNoInteractions(transferRepository, idempotencyKeyRepository, ledgerClient);
+        assertEquals(rejectedBefore + 1, registry.get("ledger.limiter.rejected").tag("reason", "limit").counter().count());
+    }
+
+    @Test
+    void enqueueTransfer_persistsQueuedPending_withoutCallingLedger() {
+        // Arrange
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("12.00"));
+        when(idempotencyKeyRepository.findById(ofClientKey("idem-queued"))).thenReturn(Optional.empty());
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        TransferResponse resp = transferService.enqueueTransfer(req, "idem-queued").block();
+
+        // Assert
+        assertNotNull(resp);
+        assertEquals("PENDING", resp.getStatus());
+        assertNotNull(resp.getTransferId());
+        verify(transferRepository).save(argThat(t ->
+                "PENDING".equals(t.getStatus()) && t.getLeaseExpiresAt() != null));
+        verifyNoInteractions(ledgerClient);
+    }
+
+    @Test
+    void createTransferAsync_replayAfterCompletion_servedFromCache_withoutDb() {
+        // Arrange
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("15.00"));
+        String idemKey = "idem-cached";
+
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey))).thenReturn(Optional.empty());
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                        .transferId(inv.getArgument(0, String.class))
+                        .status("SUCCESS")
+                        .message("Transfer completed")
+                        .build()));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        TransferResponse first = transferService.createTransferAsync(req, idemKey).block();
+        TransferResponse replay = transferService.createTransferAsync(req, idemKey).block();
+
+        // Assert
+        assertEquals(first.getTransferId(), replay.getTransferId());
+        assertEquals("SUCCESS", replay.getStatus());
+        assertEquals("Idempotent replay", replay.getMessage());
+        verify(idempotencyKeyRepository, times(1)).findById(ofClientKey(idemKey));
+        verify(ledgerClient, times(1)).transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+        assertEquals(1.0, registry.get("transfer.replays").tag("source", "cache").counter().count());
+        assertEquals(1L, registry.get("ledger.call").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void createTransferAsync_concurrentDuplicates_shareOneLedgerCall() {
+        // Arrange: the ledger answer is held back until both requests are in flight
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("40.00"));
+        String idemKey = "idem-storm";
+        Sinks.One<TransferResponse> ledger = Sinks.one();
+
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey))).thenReturn(Optional.empty());
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenReturn(ledger.asMono());
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        CompletableFuture<TransferResponse> first = transferService.createTransferAsync(req, idemKey).toFuture();
+        CompletableFuture<TransferResponse> duplicate = transferService.createTransferAsync(req, idemKey).toFuture();
+        ledger.tryEmitValue(TransferResponse.builder()
+                .transferId("ledger-tx")
+                .status("SUCCESS")
+                .message("Transfer completed")
+                .build());
+
+        // Assert
+        assertEquals("SUCCESS", first.join().getStatus());
+        assertEquals("SUCCESS", duplicate.join().getStatus());
+        assertEquals("Idempotent replay", duplicate.join().getMessage());
+        verify(ledgerClient, times(1)).transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+        verify(transferRepository, times(1)).save(any(Transfer.class));
+    }
+
+    @Test
+    void createTransferAsync_keyReservedConcurrentlyElsewhere_replaysWinner_andSkipsLedger() {
+        // Arrange: lookup misses, then our insert loses the race on the primary key
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("60.00"));
+        String idemKey = "idem-race";
+        Transfer winner = Transfer.builder()
+                .transferId("winner-tx")
+                .status("PENDING")
+                .build();
+
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey)))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(IdempotencyKey.builder()
+                        .key(ofClientKey(idemKey))
+                        .transfer(winner)
+                        .createdAt(LocalDateTime.now())
+                        .build()));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        // Act
+        TransferResponse resp = transferService.createTransferAsync(req, idemKey).block();
+
+        // Assert
+        assertEquals("winner-tx", resp.getTransferId());
+        assertEquals("PENDING", resp.getStatus());
+        verifyNoInteractions(ledgerClient);
+    }
+
+    @Test
+    void createTransferAsync_keyUnknownToFilter_skipsLookup_andAConflictFallsBackToIt() {
+        // Arrange: filter rebuilt from an empty table; the key was reserved by another instance
+        keyFilter.rebuild();
+        TransferRequest req = new TransferRequest(1L, 2L, new BigDecimal("70.00"));
+        String idemKey = "idem-elsewhere";
+        Transfer winner = Transfer.builder()
+                .transferId("winner-tx")
+                .status("SUCCESS")
+                .build();
+
+        when(idempotencyKeyRepository.findById(ofClientKey(idemKey)))
+                .thenReturn(Optional.of(IdempotencyKey.builder()
+                        .key(ofClientKey(idemKey))
+                        .transfer(winner)
+                        .createdAt(LocalDateTime.now())
+                        .build()));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        // Act
+        TransferResponse resp = transferService.createTransferAsync(req, idemKey).block();
+
+        // Assert: the first attempt went straight to the insert, the retry looked the key up once
+        assertEquals("winner-tx", resp.getTransferId());
+        verify(idempotencyKeyRepository, times(1)).findById(ofClientKey(idemKey));
+        verify(idempotencyKeyRepository, times(1)).saveAndFlush(any(IdempotencyKey.class));
+        assertEquals(1.0, registry.get("idempotency.filter.skipped").counter().count());
+        verifyNoInteractions(ledgerClient);
+    }
+
+    @Test
+    void getTransferView_pending_readFreshOnEveryPoll() {
         // Arrange
-        String transferId = "abc-123";
-        Transfer t = Transfer.builder()
+        String transferId = TransferIds.newId();
+        TransferView pending = TransferView.builder()
                 .transferId(transferId)
                 .fromAccountId(10L)
                 .toAccountId(20L)
@@ -148,34 +385,129 @@ class TransferServiceTest {
                 .status("PENDING")
                 .build();
 
-        when(transferRepository.findByTransferId(transferId)).thenReturn(Optional.of(t));
+        when(transferRepository.findViewByTransferId(transferId)).thenReturn(Optional.of(pending));
 
         // Act
-        Transfer result = transferService.getByTransferId(transferId);
+        TransferView result = transferService.getTransferView(transferId);
+        transferService.getTransferView(transferId);
 
         // Assert
-        assertNotNull(result);
         assertEquals(10L, result.getFromAccountId());
         assertEquals("PENDING", result.getStatus());
-        verify(transferRepository, times(1)).findByTransferId(transferId);
+        verify(transferRepository, times(2)).findViewByTransferId(transferId);
+        verify(transferRepository, never()).findByTransferId(anyString());
     }
 
     @Test
-    void getByTransferId_notFound_throws404() {
+    void getTransferView_terminal_servedFromCacheAfterFirstRead() {
         // Arrange
-        String missing = "does-not-exist";
-        when(transferRepository.findByTransferId(missing)).thenReturn(Optional.empty());
+        String transferId = TransferIds.newId();
+        TransferView done = TransferView.builder()
+                .transferId(transferId)
+                .status("SUCCESS")
+                .message("Transfer completed")
+                .build();
+
+        when(transferRepository.findViewByTransferId(transferId)).thenReturn(Optional.of(done));
+
+        // Act
+        TransferView first = transferService.getTransferView(transferId);
+        TransferView second = transferService.getTransferView(transferId);
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(first.etag(), second.etag());
+        verify(transferRepository, times(1)).findViewByTransferId(transferId);
+    }
+
+    @Test
+    void transferViewEtag_changesWithAnyField_evenWhenMessageHashesCollide() {
+        // Arrange: "Aa" and "BB" share a String hashCode
+        String transferId = TransferIds.newId();
+        String etag = failedView(transferId, "10.00", "Aa").etag();
+
+        // Act + Assert
+        assertEquals(etag, failedView(transferId, "10.00", "Aa").etag());
+        assertNotEquals(etag, failedView(transferId, "10.00", "BB").etag());
+        assertNotEquals(etag, failedView(transferId, "11.00", "Aa").etag());
+        assertNotEquals(etag, failedView(TransferIds.newId(), "10.00", "Aa").etag());
+    }
+
+    private static TransferView failedView(String transferId, String amount, String message) {
+        return TransferView.builder()
+                .transferId(transferId)
+                .amount(new BigDecimal(amount))
+                .status("FAILURE")
+                .message(message)
+                .build();
+    }
+
+    @Test
+    void getTransferView_uppercaseId_readsAndCachesTheStoredLowercaseId() {
+        // Arrange
+        String transferId = TransferIds.newId();
+        TransferView done = TransferView.builder()
+                .transferId(transferId)
+                .status("SUCCESS")
+                .message("Transfer completed")
+                .build();
+        when(transferRepository.findViewByTransferId(transferId)).thenReturn(Optional.of(done));
+
+        // Act
+        TransferView upper = transferService.getTransferView(transferId.toUpperCase());
+        TransferView lower = transferService.getTransferView(transferId);
+
+        // Assert
+        assertSame(upper, lower);
+        verify(transferRepository, times(1)).findViewByTransferId(transferId);
+    }
+
+    @Test
+    void watchTransfers_uppercaseId_getsTheOutcomePublishedUnderTheStoredId() {
+        // Arrange
+        String transferId = TransferIds.newId();
+        when(transferRepository.findViewByTransferId(transferId)).thenReturn(Optional.of(TransferView.builder()
+                .transferId(transferId)
+                .status("PENDING")
+                .message("Awaiting ledger")
+                .build()));
+        List<String> seen = new ArrayList<>();
+
+        // Act
+        transferService.watchTransfers(List.of(transferId.toUpperCase()))
+                .subscribe(r -> seen.add(r.getStatus()));
+        transferEvents.publish(transferId, TransferResponse.builder()
+                .transferId(transferId).status("SUCCESS").message("Transfer completed").build());
+
+        // Assert
+        assertEquals(List.of("PENDING", "SUCCESS"), seen);
+    }
+
+    @Test
+    void getTransferView_notFound_throws404() {
+        // Arrange
+        String missing = TransferIds.newId();
+        when(transferRepository.findViewByTransferId(missing)).thenReturn(Optional.empty());
 
         // Act + Assert
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
-                () -> transferService.getByTransferId(missing));
+                () -> transferService.getTransferView(missing));
         assertEquals(404, ex.getStatusCode().value());
         assertTrue(ex.getReason().contains("Transfer not found"));
-        verify(transferRepository, times(1)).findByTransferId(missing);
+        verify(transferRepository, times(1)).findViewByTransferId(missing);
     }
 
     @Test
-    void processBatch_success_twoItems_runsConcurrentlyButDeterministically() {
+    void getTransferView_malformedId_404WithoutQuery() {
+        // Act + Assert
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> transferService.getTransferView("not-a-transfer-id"));
+        assertEquals(404, ex.getStatusCode().value());
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    void processBatch_success_twoItems_persistedWithBatchCalls() {
         // Arrange
         String batchKey = "batch-123";
         List<TransferRequest> items = List.of(
@@ -184,24 +516,19 @@ class TransferServiceTest {
         );
 
         // No idempotency hits during batch
-        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
-        when(idempotencyKeyRepository.save(any(IdempotencyKey.class)))
-                .thenAnswer(inv -> inv.getArgument(0));
+        when(idempotencyKeyRepository.findAllWithTransfer(anyCollection())).thenReturn(List.of());
 
         // Ledger: always success, echo transferId argument
-        when(ledgerClient.transferToLedger(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
                 .thenAnswer(inv -> {
                     String tid = inv.getArgument(0, String.class);
-                    return TransferResponse.builder()
+                    return Mono.just(TransferResponse.builder()
                             .transferId(tid)
                             .status("SUCCESS")
                             .message("Transfer completed")
-                            .build();
+                            .build());
                 });
 
-        when(transferRepository.save(any(Transfer.class)))
-                .thenAnswer(inv -> inv.getArgument(0));
-
         // Act
         List<TransferResponse> responses = transferService.processBatch(items, batchKey);
 
@@ -212,8 +539,207 @@ class TransferServiceTest {
             assertNotNull(r.getTransferId());
             assertFalse(r.getTransferId().isBlank());
         });
-        verify(ledgerClient, times(2)).transferToLedger(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
-        verify(transferRepository, times(2)).save(any(Transfer.class));
-        verify(idempotencyKeyRepository, times(2)).save(any(IdempotencyKey.class));
+        verify(ledgerClient, times(2)).transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+        // One reserve and one complete for the whole batch, not one per item
+        verify(transferRepository, times(1)).saveAll(argThat((List<Transfer> l) -> l.size() == 2));
+        verify(idempotencyKeyRepository, times(1)).saveAll(argThat((List<IdempotencyKey> l) -> l.size() == 2));
+        verify(transferRepository, times(1)).findAllByTransferIdIn(argThat(ids -> ids.size() == 2));
+        verify(transferRepository, never()).save(any(Transfer.class));
+        verify(transferRepository, never()).updateOutcome(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void processBatch_oneItemFails_returnsPartialResultsInRequestOrder() {
+        // Arrange
+        List<TransferRequest> items = List.of(
+                new TransferRequest(1L, 2L, new BigDecimal("10.00")),
+                new TransferRequest(2L, 3L, new BigDecimal("20.00")),
+                new TransferRequest(3L, 4L, new BigDecimal("30.00"))
+        );
+
+        when(idempotencyKeyRepository.findAllWithTransfer(anyCollection())).thenReturn(List.of());
+
+        // Ledger blows up for the middle item only
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> {
+                    if (inv.getArgument(1, Long.class) == 2L) {
+                        return Mono.error(new IllegalStateException("ledger exploded"));
+                    }
+                    return Mono.just(TransferResponse.builder()
+                            .transferId(inv.getArgument(0, String.class))
+                            .status("SUCCESS")
+                            .message("Transfer completed")
+                            .build());
+                });
+
+        // Act
+        List<TransferResponse> responses = transferService.processBatch(items, "batch-partial");
+
+        // Assert
+        assertEquals(3, responses.size());
+        assertEquals("SUCCESS", responses.get(0).getStatus());
+        assertEquals("FAILURE", responses.get(1).getStatus());
+        assertEquals("Ledger call failed", responses.get(1).getMessage());
+        assertEquals("SUCCESS", responses.get(2).getStatus());
+        // The failed item's PENDING reservation is still closed out with the others
+        verify(transferRepository).findAllByTransferIdIn(argThat(ids ->
+                ids.size() == 3 && ids.contains(responses.get(1).getTransferId())));
+    }
+
+    @Test
+    void processBatch_ledgerSlowerThanItemTimeout_answersPending_andRecordsTheLateOutcome() {
+        // Arrange
+        properties.getBatch().setItemTimeout(Duration.ofMillis(100));
+        when(idempotencyKeyRepository.findAllWithTransfer(anyCollection())).thenReturn(List.of());
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                                .transferId(inv.getArgument(0, String.class))
+                                .status("SUCCESS")
+                                .message("Transfer completed")
+                                .build())
+                        .delayElement(Duration.ofMillis(400)));
+
+        // Act
+        List<TransferResponse> responses = transferService.processBatch(
+                List.of(new TransferRequest(1L, 2L, new BigDecimal("10.00"))), "batch-slow");
+
+        // Assert: answered PENDING with its id, not released, and completed once the ledger answered
+        assertEquals(1, responses.size());
+        TransferResponse pending = responses.get(0);
+        assertEquals("PENDING", pending.getStatus());
+        assertNotNull(pending.getTransferId());
+        verify(idempotencyKeyRepository, never()).deleteByKeyIn(anyCollection());
+        verify(transferRepository, timeout(2000)).updateOutcome(pending.getTransferId(), "SUCCESS", "Transfer completed");
+    }
+
+    @Test
+    void processStream_emitsInInputOrder_usesBatchKeys_andEndsWithFailureOnBadInput() {
+        // Arrange
+        String batchKey = "payroll-7";
+        TransferRequest first = new TransferRequest(1L, 2L, new BigDecimal("10.00"));
+        TransferRequest invalid = new TransferRequest(3L, 3L, new BigDecimal("5.00"));
+        TransferRequest third = new TransferRequest(4L, 5L, new BigDecimal("30.00"));
+
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                        .transferId(inv.getArgument(0, String.class))
+                        .status("SUCCESS")
+                        .message("Transfer completed")
+                        .build()));
+
+        // Act: the third line is followed by unparseable input
+        List<TransferResponse> responses = transferService.processStream(
+                        Flux.concat(Flux.just(first, invalid, third),
+                                Flux.error(new IllegalStateException("Unexpected character"))),
+                        batchKey)
+                .collectList()
+                .block();
+
+        // Assert
+        assertNotNull(responses);
+        assertEquals(4, responses.size());
+        assertEquals("SUCCESS", responses.get(0).getStatus());
+        assertEquals("FAILURE", responses.get(1).getStatus());
+        assertEquals("SUCCESS", responses.get(2).getStatus());
+        assertEquals("FAILURE", responses.get(3).getStatus());
+        assertTrue(responses.get(3).getMessage().startsWith("Stream aborted after 3 items"));
+
+        IdempotencyKeys.ItemKeys itemKeys = IdempotencyKeys.forBatch(batchKey);
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(k -> k.getKey().equals(itemKeys.of(first))));
+        verify(idempotencyKeyRepository).saveAndFlush(argThat(k -> k.getKey().equals(itemKeys.of(third))));
+        assertEquals(3, registry.get("transfer.stream.items").summary().totalAmount());
+    }
+
+    @Test
+    void processStream_itemTimeout_stopsTheTransfer_orAnswersPendingOnceTheLedgerHasIt() {
+        // Arrange: two bulk permits left, a 200ms ledger and a 300ms item timeout
+        properties.getStream().setConcurrency(8);
+        properties.getStream().setItemTimeout(Duration.ofMillis(300));
+        List<Permit> held = new ArrayList<>();
+        while (concurrencyLimiter.availableForBulk() > 2) {
+            held.add(concurrencyLimiter.acquire().block());
+        }
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                                .transferId(inv.getArgument(0, String.class))
+                                .status("SUCCESS")
+                                .message("Transfer completed")
+                                .build())
+                        .delayElement(Duration.ofMillis(200)));
+        List<TransferRequest> requests = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            requests.add(new TransferRequest(1L, 2L, new BigDecimal(i)));
+        }
+
+        // Act
+        List<TransferResponse> responses = transferService.processStream(Flux.fromIterable(requests), "payroll-8")
+                .collectList()
+                .block();
+
+        // Assert: only items answered with a transferId reached the ledger, then or later
+        assertNotNull(responses);
+        assertEquals(40, responses.size());
+        List<TransferResponse> sent = responses.stream()
+                .filter(r -> !"FAILURE".equals(r.getStatus()))
+                .toList();
+        assertTrue(sent.stream().allMatch(r -> r.getTransferId() != null));
+        assertTrue(sent.stream().anyMatch(r -> "PENDING".equals(r.getStatus())));
+        assertTrue(sent.size() < responses.size());
+        verify(ledgerClient, after(500).times(sent.size()))
+                .transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+        held.forEach(Permit::release);
+    }
+
+    @Test
+    void processStream_ledgerSlowerThanItemTimeout_answersPending_likeABatch() {
+        // Arrange: two identical items share one transfer
+        properties.getStream().setItemTimeout(Duration.ofMillis(100));
+        TransferRequest item = new TransferRequest(1L, 2L, new BigDecimal("10.00"));
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(transferRepository.save(any(Transfer.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        when(ledgerClient.transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class)))
+                .thenAnswer(inv -> Mono.just(TransferResponse.builder()
+                                .transferId(inv.getArgument(0, String.class))
+                                .status("SUCCESS")
+                                .message("Transfer completed")
+                                .build())
+                        .delayElement(Duration.ofMillis(400)));
+
+        // Act
+        List<TransferResponse> responses = transferService.processStream(Flux.just(item, item), "payroll-9")
+                .collectList()
+                .block();
+
+        // Assert: PENDING, the first with its id, and one call that records its outcome
+        assertNotNull(responses);
+        assertEquals(List.of("PENDING", "PENDING"), responses.stream().map(TransferResponse::getStatus).toList());
+        String transferId = responses.get(0).getTransferId();
+        assertNotNull(transferId);
+        verify(transferRepository, timeout(2000)).updateOutcome(transferId, "SUCCESS", "Transfer completed");
+        verify(ledgerClient, times(1)).transferToLedgerAsync(anyString(), anyLong(), anyLong(), any(BigDecimal.class));
+    }
+
+    @Test
+    void processBatch_overMaxSize_rejected() {
+        List<TransferRequest> items = Collections.nCopies(21,
+                new TransferRequest(1L, 2L, new BigDecimal("1.00")));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> transferService.processBatch(items, "batch-too-big"));
+        assertEquals(400, ex.getStatusCode().value());
+        verifyNoInteractions(ledgerClient);
     }
 }
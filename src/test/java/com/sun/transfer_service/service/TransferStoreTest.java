@@ -0,0 +1,133 @@
+package com.sun.transfer_service.service;
+
+import com.sun.transfer_service.config.TransferProperties;
+import com.sun.transfer_service.dto.TransferRequest;
+import com.sun.transfer_service.dto.TransferResponse;
+import com.sun.transfer_service.repository.IdempotencyKeyRepository;
+import com.sun.transfer_service.repository.TransferRepository;
+import com.sun.transfer_service.service.TransferStore.Reservation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch reserve/complete against H2 with Hibernate statistics on, so the number of
+ * statements a batch costs is checked, not just the outcome.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TransferStoreTest {
+
+    @Autowired private TransferRepository transferRepository;
+    @Autowired private IdempotencyKeyRepository keyRepository;
+    @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory emf;
+
+    private IdempotencyKeyFilter keyFilter;
+    private TransferStore store;
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        TransferProperties properties = new TransferProperties();
+        keyFilter = new IdempotencyKeyFilter(properties, keyRepository, new SimpleMeterRegistry());
+        store = new TransferStore(transferRepository, keyRepository, properties, keyFilter);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void reserveAll_andCompleteAll_costAFewStatementsForTwentyItems() {
+        // Arrange: two of the twenty keys are already known
+        store.reserve(request(0), key(0));
+        store.reserve(request(1), key(1));
+        em.flush();
+        em.clear();
+        Map<String, TransferRequest> items = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            items.put(key(i), request(i));
+        }
+
+        // Act: reserve
+        stats.clear();
+        Map<String, Reservation> reservations = store.reserveAll(items);
+        long reserveStatements = stats.getPrepareStatementCount();
+
+        // Assert: 1 select of known keys + sequence + one batched insert per table
+        assertEquals(20, reservations.size());
+        assertTrue(reservations.get(key(0)).isReplay());
+        assertFalse(reservations.get(key(2)).isReplay());
+        assertTrue(reserveStatements <= 4, "reserve took " + reserveStatements + " statements");
+
+        // Act: complete 17, release 1 that never reached the ledger
+        Map<String, TransferResponse> outcomes = new HashMap<>();
+        for (int i = 2; i < 19; i++) {
+            String transferId = reservations.get(key(i)).transferId();
+            outcomes.put(transferId, TransferResponse.builder().transferId(transferId)
+                    .status("SUCCESS").message("Transfer completed").build());
+        }
+        stats.clear();
+        store.completeAll(outcomes, List.of(key(19)));
+        em.flush();
+        long completeStatements = stats.getPrepareStatementCount();
+        em.clear();
+
+        // Assert: select + batched update, select + two deletes for the released key
+        assertTrue(completeStatements <= 5, "complete took " + completeStatements + " statements");
+        String done = reservations.get(key(7)).transferId();
+        assertEquals("SUCCESS", transferRepository.findByTransferId(done).orElseThrow().getStatus());
+        String released = reservations.get(key(19)).transferId();
+        assertTrue(transferRepository.findByTransferId(released).isEmpty());
+        assertFalse(keyRepository.existsById(key(19)));
+        assertEquals(19, transferRepository.count());
+    }
+
+    @Test
+    void reserve_newKey_costsOneStatementLessOnceTheFilterIsRebuilt() {
+        // Arrange: one key reserved before the rebuild, so it is loaded from the table
+        store.reserve(request(0), key(0));
+        em.flush();
+        em.clear();
+
+        // Act: a new key before and after the rebuild
+        stats.clear();
+        store.reserve(request(1), key(1));
+        long withLookup = stats.getPrepareStatementCount();
+        keyFilter.rebuild();
+        stats.clear();
+        store.reserve(request(2), key(2));
+        long withoutLookup = stats.getPrepareStatementCount();
+        em.clear();
+        Reservation replay = store.reserve(request(0), key(0));
+
+        IdempotencyKeyFilter loaded = new IdempotencyKeyFilter(new TransferProperties(), keyRepository, new SimpleMeterRegistry());
+        loaded.rebuild();
+
+        // Assert: a filter rebuilt from the table knows every key in it
+        assertEquals(withLookup - 1, withoutLookup);
+        assertTrue(replay.isReplay());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(loaded.mightContain(key(i)), "missing key " + i);
+        }
+    }
+
+    private static String key(int i) {
+        return IdempotencyKeys.ofClientKey("batch:" + i);
+    }
+
+    private static TransferRequest request(int i) {
+        return new TransferRequest((long) i + 1, (long) i + 100, new BigDecimal("5.00"));
+    }
+}